@@ -25,13 +25,17 @@
 package org.biouno.unochoice;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.servlet.http.HttpSession;
+
 import org.apache.commons.lang.StringUtils;
 import org.biouno.unochoice.model.Script;
+import org.biouno.unochoice.util.LatestRequests;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.bind.JavaScriptMethod;
 import org.kohsuke.stapler.json.JsonHttpResponse;
 
@@ -49,6 +53,10 @@ public abstract class AbstractCascadableParameter extends AbstractScriptablePara
      * Serial UID. 
      */
     private static final long serialVersionUID = 3795727126307053346L;
+    /**
+     * Latest requests from the UI, so that the evaluations of the requests they supersede stop.
+     */
+    private static final LatestRequests LATEST_REQUESTS = new LatestRequests();
     /**
      * Map with parameters in the UI.
      */
@@ -116,17 +124,30 @@ public abstract class AbstractCascadableParameter extends AbstractScriptablePara
     @JavaScriptMethod
     public void doUpdate(String parameters) {
         getParameters().clear();
+        getParameters().putAll(parseParameters(parameters));
+        throw new JsonHttpResponse(null);
+    }
+
+    /**
+     * Parse the parameter values sent by the UI, in the form {@code name=value}, separated by {@link #SEPARATOR}.
+     *
+     * @param parameters encoded parameter values
+     * @return map with the parameter names and values, in the order they were sent
+     * @since 2.8.4
+     */
+    protected static Map<Object, Object> parseParameters(String parameters) {
+        final Map<Object, Object> parsed = new LinkedHashMap<>();
         final String[] params = parameters.split(SEPARATOR);
         for (String param : params) {
             final String[] nameValue = param.split(EQUALS);
             if (nameValue.length == 1) {
                 final String name = nameValue[0].trim();
                 if (name.length() > 0)
-                    getParameters().put(name, "");
+                    parsed.put(name, "");
             } else if (nameValue.length == 2) {
                 final String name = nameValue[0];
                 final String value = nameValue[1];
-                getParameters().put(name, value);
+                parsed.put(name, value);
             } else if (nameValue.length > 2) {
                 // TBD: we can eliminate this branch by splitting only on the first EQUALS
                 final String name = nameValue[0];
@@ -139,10 +160,47 @@ public abstract class AbstractCascadableParameter extends AbstractScriptablePara
                     }
                 }
                 final String value = sb.toString();
-                getParameters().put(name, value);
+                parsed.put(name, value);
             }
         }
-        throw new JsonHttpResponse(null);
+        return parsed;
+    }
+
+    /**
+     * Encode parameter values as the UI sends them, the reverse of {@link #parseParameters(String)}.
+     *
+     * @param parameters parameter names and values
+     * @return encoded parameter values
+     * @since 2.8.4
+     */
+    protected static String encodeParameters(Map<Object, Object> parameters) {
+        final List<String> params = new ArrayList<>(parameters.size());
+        for (Map.Entry<Object, Object> parameter : parameters.entrySet()) {
+            params.add(parameter.getKey() + EQUALS + parameter.getValue());
+        }
+        return StringUtils.join(params, SEPARATOR);
+    }
+
+    /**
+     * Prepare the parameter to be rendered with the page. Its choices are evaluated with the initial values of the
+     * referenced parameters, computed once per request for every parameter of the job, so that the UI does not have
+     * to evaluate them again once the page is loaded. When an initial value is not known, the choices are evaluated
+     * without parameter values, and the UI updates them.
+     *
+     * @return the initial values of the referenced parameters, encoded as in {@link #doUpdate(String)}, for the UI
+     * to compare with the values in the page, or {@code null} if they are not known
+     * @since 2.8.4
+     */
+    public String prepareInitialParameters() {
+        getParameters().clear();
+        final Map<String, String> initialValues = CascadeUpdate.initialValues(this);
+        final Map<Object, Object> referencedValues = initialValues != null
+                ? CascadeUpdate.referencedValues(this, initialValues) : null;
+        if (referencedValues == null) {
+            return null;
+        }
+        getParameters().putAll(referencedValues);
+        return encodeParameters(referencedValues);
     }
 
     /*
@@ -152,8 +210,113 @@ public abstract class AbstractCascadableParameter extends AbstractScriptablePara
     @Override
     @JavaScriptMethod
     public List<Object> getChoicesForUI() {
-        Map<Object, Object> mapResult = getChoices(getParameters());
-        return Arrays.asList(mapResult.values(), mapResult.keySet());
+        return toUI(getParameters());
+    }
+
+    /**
+     * Get the choices for the given values of the referenced parameters, in one call and without changing the
+     * state of the parameter. Unlike {@link #doUpdate(String)} followed by {@link #getChoicesForUI()}, concurrent
+     * requests do not interfere with each other.
+     *
+     * <p>A request is superseded by a request of the same page for the same parameter with a higher sequence
+     * number. The choices are not evaluated if the request is superseded before it starts, and the request stops
+     * waiting for the scripts if it is superseded while they run.</p>
+     *
+     * @param parameters values of the referenced parameters, encoded as in {@link #doUpdate(String)}
+     * @param page identifier of the page sending the request, or {@code null} if requests are not superseded
+     * @param sequence sequence number of the request in the page
+     * @return the choices, in the same format as {@link #getChoicesForUI()}, or a string for reference parameters
+     * rendered as text or HTML. {@code null} if the request was superseded before it started
+     * @since 2.8.4
+     */
+    @JavaScriptMethod
+    public Object getUpdatedChoicesForUI(String parameters, String page, long sequence) {
+        try (LatestRequests.Request request = startRequest(page, getName(), sequence)) {
+            return request.isSuperseded() ? null : getChoicesForUI(parseParameters(parameters));
+        }
+    }
+
+    /**
+     * Re-evaluates, in one call, every cascadable parameter of the job that depends, directly or not, on the
+     * parameter that changed in the UI. The parameters are evaluated in dependency order, and the default
+     * selection of each parameter is used as its value when evaluating the parameters that reference it.
+     *
+     * <p>A parameter is evaluated only if the value of a parameter it references changed. When its choices have
+     * the same hash as the choices displayed, the UI keeps them, so the parameter keeps its value, and it is left
+     * out of the result.</p>
+     *
+     * <p>A request is superseded by a request of the same page, for a change of the same parameter, with a
+     * higher sequence number. The remaining parameters are not evaluated once the request is superseded.</p>
+     *
+     * @param changedParameter name of the parameter that changed in the UI
+     * @param parameters current values of the parameters in the UI, encoded as in {@link #doUpdate(String)}
+     * @param hashes hashes of the choices displayed in the UI, as returned by {@link ChoiceEntry#toUI(List)}, by
+     * parameter name, encoded as in {@link #doUpdate(String)}
+     * @param page identifier of the page sending the request, or {@code null} if requests are not superseded
+     * @param sequence sequence number of the request in the page
+     * @return map with the name of each updated parameter and its choices, in the same format as
+     * {@link #getChoicesForUI()}, or a string for reference parameters rendered as text or HTML. {@code null} if
+     * the request was superseded
+     * @since 2.8.4
+     */
+    @JavaScriptMethod
+    public Map<String, Object> getCascadeUpdateForUI(String changedParameter, String parameters, String hashes,
+            String page, long sequence) {
+        try (LatestRequests.Request request = startRequest(page, "cascade/" + changedParameter, sequence)) {
+            return CascadeUpdate.evaluate(this, changedParameter, parseParameters(parameters),
+                    parseParameters(StringUtils.defaultString(hashes)), request);
+        }
+    }
+
+    /**
+     * Start a request from the UI. Requests are tracked per session, page and target, and only when the page
+     * is known.
+     */
+    static LatestRequests.Request startRequest(String page, String target, long sequence) {
+        final StaplerRequest request = Stapler.getCurrentRequest();
+        final HttpSession session = request != null ? request.getSession(false) : null;
+        final String key = session != null && StringUtils.isNotBlank(page)
+                ? session.getId() + '/' + page + '/' + target : null;
+        return LATEST_REQUESTS.start(key, sequence);
+    }
+
+    /**
+     * Get the choices of this parameter in the format used by the UI, for the given parameter values.
+     *
+     * @param parameters parameter values
+     * @return the choices, in the same format as {@link #getChoicesForUI()}
+     * @since 2.8.4
+     */
+    protected Object getChoicesForUI(Map<Object, Object> parameters) {
+        return toUI(parameters);
+    }
+
+    /**
+     * Get the page of choices matching the query, for the given values of the referenced parameters. Like
+     * {@link #getUpdatedChoicesForUI(String)}, it does not change the state of the parameter.
+     *
+     * @param parameters values of the referenced parameters, encoded as in {@link #doUpdate(String)}
+     * @param query text to look for in the labels of the choices, ignoring case
+     * @param offset position of the first choice of the page, among the matching choices
+     * @param limit maximum number of choices in the page, or zero for the page size of the parameter
+     * @return the page, in the same format as {@link #getChoicesPage(String, int, int)}
+     * @since 2.8.4
+     */
+    @JavaScriptMethod
+    public List<Object> getUpdatedChoicesPage(String parameters, String query, int offset, int limit) {
+        return getChoicesPage(parseParameters(parameters), query, offset, limit);
+    }
+
+    /**
+     * Evaluate the choices and convert them to the format used by the UI. Only the first page of choices is
+     * converted when the parameter has a page size.
+     */
+    private List<Object> toUI(Map<Object, Object> parameters) {
+        final Integer pageSize = getPageSize();
+        if (pageSize != null) {
+            return indexChoices(parameters).page(null, 0, pageSize).toUI();
+        }
+        return ChoiceEntry.toUI(ChoiceEntry.of(getChoices(parameters)));
     }
 
     public String[] getReferencedParametersAsArray() {
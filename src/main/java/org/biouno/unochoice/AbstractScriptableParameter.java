@@ -24,30 +24,52 @@
 
 package org.biouno.unochoice;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
+import org.biouno.unochoice.model.GroovyScript;
 import org.biouno.unochoice.model.Script;
+import org.biouno.unochoice.util.BoundedCache;
+import org.biouno.unochoice.util.LayeredMap;
+import org.biouno.unochoice.util.LazyValue;
 import org.biouno.unochoice.util.ScriptCallback;
+import org.biouno.unochoice.util.ScriptExecutor;
+import org.biouno.unochoice.util.SingleFlight;
 import org.biouno.unochoice.util.Utils;
 import org.kohsuke.stapler.Ancestor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.bind.JavaScriptMethod;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
 import hudson.model.AbstractItem;
+import hudson.model.Item;
 import hudson.model.Job;
+import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
-import hudson.model.Project;
 import hudson.model.Run;
 import hudson.model.StringParameterValue;
+import hudson.model.listeners.ItemListener;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 
 /**
  * Base class for parameters with scripts.
@@ -82,6 +104,36 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
      * Constant used to add the parameter name in the environment variables map.
      */
     protected static final String JENKINS_PARAMETER_VARIABLE_NAME = "jenkinsParameter";
+    /**
+     * Maximum number of entries kept in the result cache of each parameter.
+     */
+    public static /* non-final for script console */ int RESULT_CACHE_MAX_ENTRIES = SystemProperties
+            .getInteger(AbstractScriptableParameter.class.getName() + ".resultCacheMaxEntries", 100);
+    /**
+     * Maximum number of choices sent to the UI in one page, whatever the page size requested.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+    /**
+     * Time, in seconds, that the search indexes used to send the choices one page at a time are kept.
+     */
+    public static /* non-final for script console */ int CHOICE_INDEX_TTL = SystemProperties
+            .getInteger(AbstractScriptableParameter.class.getName() + ".choiceIndexTtl", 300);
+    /**
+     * Number of choices above which the checkboxes and radio buttons are rendered as a virtual list, where only the
+     * visible rows are in the page.
+     */
+    public static /* non-final for script console */ int VIRTUAL_CHOICES_THRESHOLD = SystemProperties
+            .getInteger(AbstractScriptableParameter.class.getName() + ".virtualChoicesThreshold", 200);
+    /**
+     * Concurrent evaluations of the same script, for the same parameter, project, parameter values, and user, are
+     * coalesced, and share the same result. Unlike the result cache, which is opt-in, coalescing is always on, so
+     * scripts returning different choices for each user never share their result.
+     */
+    private static final SingleFlight<List<Object>> EVALUATIONS_IN_FLIGHT = new SingleFlight<>();
+    /**
+     * Request attribute with the script evaluations started by {@link #prefetchChoices()}.
+     */
+    private static final String PREFETCH_ATTRIBUTE = AbstractScriptableParameter.class.getName() + ".prefetch";
     /**
      * Number of visible items on the screen.
      */
@@ -98,6 +150,32 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
      * The project Full Name (including folder).
      */
     private final String projectFullName;
+    /**
+     * Time, in seconds, that script results are kept in the cache. The cache is disabled when {@code null}
+     * or not positive.
+     */
+    private Integer resultCacheTtl;
+    /**
+     * Time, in seconds, that the script can run before being interrupted. {@link ScriptExecutor#TIMEOUT} is used
+     * when {@code null}, or when lower.
+     */
+    private Integer scriptTimeout;
+    /**
+     * Number of choices sent to the UI at a time. Every choice is sent at once when {@code null}.
+     */
+    private Integer pageSize;
+    /**
+     * Script results, keyed by the script, the values of the parameters used in the evaluation, and the user.
+     */
+    private transient volatile BoundedCache<List<Object>, Object> resultCache;
+    /**
+     * Search indexes over the choices, keyed like the script results.
+     */
+    private transient volatile BoundedCache<List<Object>, ChoiceIndex> choiceIndexes;
+    /**
+     * The job found by {@link #findProject()}, cleared when the job is renamed, moved or deleted.
+     */
+    private transient volatile WeakReference<Job<?, ?>> projectReference;
 
     /**
      * Inherited constructor.
@@ -167,6 +245,238 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
         return script;
     }
 
+    /**
+     * Gets the time, in seconds, that script results are cached.
+     *
+     * @return time-to-live of cached results, {@code null} if the cache is disabled
+     * @since 2.8.4
+     */
+    public Integer getResultCacheTtl() {
+        return resultCacheTtl;
+    }
+
+    /**
+     * Sets the time, in seconds, that script results are cached. Results are cached per combination of
+     * values of the parameters used in the evaluation.
+     *
+     * @param resultCacheTtl time-to-live of cached results, {@code null} or zero to disable the cache
+     * @since 2.8.4
+     */
+    @DataBoundSetter
+    public void setResultCacheTtl(Integer resultCacheTtl) {
+        this.resultCacheTtl = (resultCacheTtl != null && resultCacheTtl > 0) ? resultCacheTtl : null;
+        this.resultCache = null;
+    }
+
+    /**
+     * Gets the time, in seconds, that the script can run.
+     *
+     * @return the timeout of the script, {@code null} if the global timeout is used
+     * @since 2.8.4
+     */
+    public Integer getScriptTimeout() {
+        return scriptTimeout;
+    }
+
+    /**
+     * Sets the time, in seconds, that the script can run when the parameter is rendered or updated in the UI. When
+     * the script does not complete in time, the last cached result or the result of the fallback script is used.
+     * Builds started outside of a web request, such as by timers, wait for the script instead.
+     *
+     * @param scriptTimeout the timeout of the script, {@code null} or zero to use the global timeout
+     * @since 2.8.4
+     */
+    @DataBoundSetter
+    public void setScriptTimeout(Integer scriptTimeout) {
+        this.scriptTimeout = (scriptTimeout != null && scriptTimeout > 0) ? scriptTimeout : null;
+    }
+
+    /**
+     * Gets the number of choices sent to the UI at a time.
+     *
+     * @return the page size, {@code null} if every choice is sent at once
+     * @since 2.8.4
+     */
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the number of choices sent to the UI at a time. The other choices are loaded as the user scrolls
+     * through the choices, or types in the filter.
+     *
+     * @param pageSize the page size, {@code null} or zero to send every choice at once
+     * @since 2.8.4
+     */
+    @DataBoundSetter
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = (pageSize != null && pageSize > 0) ? Math.min(pageSize, MAX_PAGE_SIZE) : null;
+    }
+
+    /**
+     * @return {@code true} if the choices are sent to the UI one page at a time
+     * @since 2.8.4
+     */
+    public boolean isPaged() {
+        return pageSize != null;
+    }
+
+    /**
+     * @return number of choices above which the checkboxes and radio buttons are rendered as a virtual list
+     * @since 2.8.4
+     */
+    public int getVirtualChoicesThreshold() {
+        return VIRTUAL_CHOICES_THRESHOLD;
+    }
+
+    /**
+     * @return number of evaluations served from the result cache
+     * @since 2.8.4
+     */
+    public long getResultCacheHits() {
+        final BoundedCache<List<Object>, Object> cache = this.resultCache;
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    /**
+     * @return number of evaluations that were not found in the result cache
+     * @since 2.8.4
+     */
+    public long getResultCacheMisses() {
+        final BoundedCache<List<Object>, Object> cache = this.resultCache;
+        return cache == null ? 0 : cache.getMisses();
+    }
+
+    /**
+     * Drops every cached script result of this parameter.
+     *
+     * @since 2.8.4
+     */
+    public void clearResultCache() {
+        final BoundedCache<List<Object>, Object> cache = this.resultCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        final BoundedCache<List<Object>, ChoiceIndex> indexes = this.choiceIndexes;
+        if (indexes != null) {
+            indexes.invalidateAll();
+        }
+    }
+
+    /**
+     * Get the result cache, creating it if necessary. Transient fields are not restored by XStream, so the
+     * cache is always created lazily.
+     *
+     * @return the result cache, or {@code null} if caching is disabled for this parameter
+     */
+    @CheckForNull
+    private BoundedCache<List<Object>, Object> getResultCache() {
+        final Integer ttl = this.resultCacheTtl;
+        if (ttl == null || ttl <= 0) {
+            return null;
+        }
+        BoundedCache<List<Object>, Object> cache = this.resultCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = this.resultCache;
+                if (cache == null) {
+                    cache = new BoundedCache<>(RESULT_CACHE_MAX_ENTRIES, ttl, TimeUnit.SECONDS);
+                    this.resultCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Key of the cached results and search indexes of the given parameter values. The user is part of the key, as
+     * the scripts may return different choices for each user.
+     */
+    private List<Object> getCacheKey(Map<Object, Object> values) {
+        return Arrays.asList(script, values, Jenkins.getAuthentication2().getName());
+    }
+
+    /**
+     * Get the search indexes over the choices, creating them if necessary.
+     *
+     * @return the search indexes
+     */
+    private BoundedCache<List<Object>, ChoiceIndex> getChoiceIndexes() {
+        BoundedCache<List<Object>, ChoiceIndex> indexes = this.choiceIndexes;
+        if (indexes == null) {
+            synchronized (this) {
+                indexes = this.choiceIndexes;
+                if (indexes == null) {
+                    indexes = new BoundedCache<>(RESULT_CACHE_MAX_ENTRIES, CHOICE_INDEX_TTL, TimeUnit.SECONDS);
+                    this.choiceIndexes = indexes;
+                }
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Evaluates the choices for the given parameter values, and keeps a search index over them for the requests
+     * of the next pages.
+     *
+     * @param parameters parameter values
+     * @return the search index, which is not kept if the evaluation did not complete
+     */
+    ChoiceIndex indexChoices(Map<Object, Object> parameters) {
+        return indexChoices(parameters, eval(getScriptParameters(parameters)));
+    }
+
+    /**
+     * Builds a search index over the choices of an evaluation. The index is kept only if the script completed, so
+     * that the value used instead, such as the result of the fallback script, is not used for the next pages.
+     */
+    private ChoiceIndex indexChoices(Map<Object, Object> parameters, Evaluation evaluation) {
+        final ChoiceIndex index = new ChoiceIndex(ChoiceEntry.of(toChoices(evaluation.value)));
+        if (evaluation.complete) {
+            getChoiceIndexes().put(getCacheKey(new LinkedHashMap<>(parameters)), index);
+        }
+        return index;
+    }
+
+    /**
+     * Get a page of the choices for the given parameter values. The search index built when the parameter was
+     * rendered or updated is used, so the script is evaluated again only if the index has expired.
+     *
+     * @param parameters parameter values
+     * @param query text to look for in the labels of the choices
+     * @param offset position of the first choice of the page, among the matching choices
+     * @param limit maximum number of choices in the page, or zero for the page size of the parameter
+     * @return the page, in the same format as {@link #getChoicesPage(String, int, int)}
+     * @since 2.8.4
+     */
+    protected List<Object> getChoicesPage(Map<Object, Object> parameters, String query, int offset, int limit) {
+        ChoiceIndex index = getChoiceIndexes().get(getCacheKey(new LinkedHashMap<>(parameters)));
+        if (index == null) {
+            index = indexChoices(parameters);
+        }
+        final Integer size = this.pageSize;
+        final int pageLimit = limit > 0 ? limit : (size != null ? size : MAX_PAGE_SIZE);
+        return index.page(query, offset, Math.min(pageLimit, MAX_PAGE_SIZE)).toUI();
+    }
+
+    /**
+     * Get a page of the choices matching the query. Used by the UI to load the choices as the user scrolls or types
+     * in the filter, when the parameter has a page size and does not reference other parameters. Cascade parameters
+     * use {@link AbstractCascadableParameter#getUpdatedChoicesPage(String, String, int, int)} instead, with the
+     * values of their referenced parameters, as their current parameters may be changed by concurrent requests.
+     *
+     * @param query text to look for in the labels of the choices, ignoring case
+     * @param offset position of the first choice of the page, among the matching choices
+     * @param limit maximum number of choices in the page, or zero for the page size of the parameter
+     * @return the labels, the values and the flags of the choices, as in {@link ChoiceEntry#toUI(List)} but with a
+     * {@code null} hash, followed by the number of choices matching the query and the offset of the next page
+     * @since 2.8.4
+     */
+    @JavaScriptMethod
+    public List<Object> getChoicesPage(String query, int offset, int limit) {
+        return getChoicesPage(Collections.emptyMap(), query, offset, limit);
+    }
+
     /**
      * Gets the current parameters, be it before or after other referenced parameters triggered an update. Populates
      * parameters common to all evaluations, such as jenkinsProject, which is the current Jenkins project.
@@ -178,18 +488,47 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
     }
 
     /**
-     * Helper parameters used to render the parameter definition.
+     * Helper parameters used to render the parameter definition. The last build is only loaded if the script
+     * reads it. The global node properties are bound by the script itself, when it reads them.
      * @return Map with helper parameters
      */
     private Map<Object, Object> getHelperParameters() {
         // map with parameters
         final Map<Object, Object> helperParameters = new LinkedHashMap<>();
 
-        // First, if the project name is set, we then find the project by its name, and inject into the map
+        final Job<?, ?> project = findProject();
+        if (project != null) {
+            helperParameters.put(JENKINS_PROJECT_VARIABLE_NAME, project);
+            helperParameters.put(JENKINS_BUILD_VARIABLE_NAME, new LazyValue(() -> {
+                Run<?, ?> build = project.getLastBuild();
+                return build != null && build.getHasArtifacts() ? build : null;
+            }));
+        }
+
+        // Here we set the parameter name
+        helperParameters.put(JENKINS_PARAMETER_VARIABLE_NAME, this);
+        return helperParameters;
+    }
+
+    /**
+     * Find the job of this parameter, of any type, using its name, the current request, or the parameter UUID.
+     * The job found is remembered until it is renamed, moved or deleted.
+     *
+     * @return the job, or {@code null} if it cannot be found
+     * @since 2.8.4
+     */
+    @CheckForNull
+    protected Job<?, ?> findProject() {
+        final WeakReference<Job<?, ?>> reference = this.projectReference;
+        final Job<?, ?> cachedProject = reference != null ? reference.get() : null;
+        if (cachedProject != null && cachedProject.hasPermission(Item.READ)) {
+            return cachedProject;
+        }
+        // First, if the project name is set, we then find the project by its name
         Job<?, ?> project = null;
         if (StringUtils.isNotBlank(this.projectFullName)) {
             // First try full name if exists
-            project = Jenkins.get().getItemByFullName(this.projectFullName, Project.class);
+            project = Jenkins.get().getItemByFullName(this.projectFullName, Job.class);
         } else if (StringUtils.isNotBlank(this.projectName)) {
             // next we try to get the item given its name, which is more efficient
             project = Utils.getProjectByName(this.projectName);
@@ -204,39 +543,231 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
         // Last chance, if we were unable to get project from name and full name, try uuid
         if (project == null) {
             // otherwise, in case we don't have the item name, we iterate looking for a job that uses this UUID
-            project = Utils.findProjectByParameterUUID(this.getRandomName());
+            project = Utils.findJobByParameterUUID(this.getRandomName());
         }
         if (project != null) {
-            helperParameters.put(JENKINS_PROJECT_VARIABLE_NAME, project);
-            Run<?, ?> build = project.getLastBuild();
-            if (build != null && build.getHasArtifacts()) {
-                helperParameters.put(JENKINS_BUILD_VARIABLE_NAME, build);
-            }
+            this.projectReference = new WeakReference<>(project);
         }
+        return project;
+    }
 
-        // Here we set the parameter name
-        helperParameters.put(JENKINS_PARAMETER_VARIABLE_NAME, this);
-
-        // Here we inject the global node properties
-        final Map<String, Object> globalNodeProperties = Utils.getGlobalNodeProperties();
-        helperParameters.putAll(globalNodeProperties);
-        return helperParameters;
+    /**
+     * Forget the job found by {@link #findProject()}.
+     */
+    private void clearProjectReference() {
+        this.projectReference = null;
     }
 
     public Map<Object, Object> getChoices() {
-        Map<Object, Object> choices = this.getChoices(getParameters());
+        Map<Object, Object> choices = toChoices(evaluateChoices().value);
         visibleItemCount = choices.size();
         return choices;
     }
 
+    /**
+     * Evaluate the choices with the current parameters, or wait for the evaluation started in the current request.
+     */
+    private Evaluation evaluateChoices() {
+        final Prefetch prefetch = findPrefetch();
+        return prefetch != null ? awaitPrefetch(prefetch) : eval(getScriptParameters(getParameters()));
+    }
+
+    /**
+     * Get the choices of the parameter with their :selected and :disabled suffixes already parsed, for the Jelly
+     * templates. Only the first page of choices is returned when the parameter has a page size.
+     *
+     * @return the choices
+     * @since 2.8.4
+     */
+    public List<ChoiceEntry> getChoiceEntries() {
+        final Evaluation evaluation = evaluateChoices();
+        final Integer size = this.pageSize;
+        if (size == null) {
+            final Map<Object, Object> choices = toChoices(evaluation.value);
+            visibleItemCount = choices.size();
+            return ChoiceEntry.of(choices);
+        }
+        return indexChoices(getParameters(), evaluation).page(null, 0, size).getEntries();
+    }
+
+    /**
+     * Get the number of choices of the parameter, rendered or not. Only available after
+     * {@link #getChoiceEntries()} when the parameter has a page size.
+     *
+     * @return the number of choices
+     * @since 2.8.4
+     */
+    public int getChoiceCount() {
+        final ChoiceIndex index = getChoiceIndexes().get(getCacheKey(new LinkedHashMap<>(getParameters())));
+        return index == null ? visibleItemCount : index.size();
+    }
+
+    /**
+     * Starts evaluating concurrently the scripts of every parameter of the job that does not reference other
+     * parameters, so that rendering the page takes as long as the slowest script, instead of the sum of the
+     * scripts. Called when the parameter is rendered, it does nothing if the scripts have already been started in
+     * the current request.
+     *
+     * @since 2.8.4
+     */
+    public void prefetchChoices() {
+        final StaplerRequest request = Stapler.getCurrentRequest();
+        if (request == null || request.getAttribute(PREFETCH_ATTRIBUTE) != null) {
+            return;
+        }
+        final Map<String, Prefetch> prefetches = new HashMap<>();
+        request.setAttribute(PREFETCH_ATTRIBUTE, prefetches);
+        final Job<?, ?> project = findProject();
+        if (project == null) {
+            return;
+        }
+        for (ParameterDefinition definition : Utils.getParameterDefinitions(project)) {
+            if (definition instanceof AbstractScriptableParameter && !(definition instanceof CascadableParameter)) {
+                final AbstractScriptableParameter parameter = (AbstractScriptableParameter) definition;
+                // the helper parameters may depend on the current request, so they are computed in this thread
+                final Map<Object, Object> helperParameters = parameter.getHelperParameters();
+                try {
+                    final Future<Evaluation> future = ScriptExecutor.submit(
+                            () -> parameter.eval(Collections.emptyMap(), helperParameters));
+                    prefetches.put(parameter.getRandomName(),
+                            new Prefetch(future, Collections.emptyMap(), helperParameters));
+                } catch (RejectedExecutionException e) {
+                    // the remaining parameters are evaluated when rendered
+                    LOGGER.log(Level.FINE, "Too many scripts running, not evaluating the parameters concurrently", e);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts evaluating the script of this parameter with the given values of the referenced parameters, in the
+     * pool, so that {@link #getRenderChoices(Map)} waits for its result instead of evaluating the script. Used to
+     * evaluate concurrently the cascadable parameters that do not depend on each other.
+     *
+     * @param parameters values of the referenced parameters
+     */
+    void prefetchChoices(Map<Object, Object> parameters) {
+        final Map<String, Prefetch> prefetches = getPrefetches();
+        if (prefetches == null || prefetches.containsKey(getRandomName())) {
+            return;
+        }
+        final Map<Object, Object> values = new LinkedHashMap<>(getScriptParameters(parameters));
+        // the helper parameters may depend on the current request, so they are computed in this thread
+        final Map<Object, Object> helperParameters = getHelperParameters();
+        try {
+            final Future<Evaluation> future = ScriptExecutor.submit(() -> eval(values, helperParameters));
+            prefetches.put(getRandomName(), new Prefetch(future, values, helperParameters));
+        } catch (RejectedExecutionException e) {
+            // the parameter is evaluated when rendered
+            LOGGER.log(Level.FINE, "Too many scripts running, not evaluating the parameters concurrently", e);
+        }
+    }
+
+    /**
+     * Get the choices this parameter is rendered with in the current request, evaluated with the given parameter
+     * values. The evaluation started by {@link #prefetchChoices()} is used, if any. Otherwise the choices are
+     * evaluated, and kept in the request, so that {@link #getChoices()} renders the parameter with them instead of
+     * evaluating the script again.
+     *
+     * @param parameters values of the referenced parameters
+     * @return the choices
+     */
+    Map<Object, Object> getRenderChoices(Map<Object, Object> parameters) {
+        final Prefetch prefetch = findPrefetch();
+        if (prefetch != null) {
+            return toChoices(awaitPrefetch(prefetch).value);
+        }
+        final Evaluation evaluation = eval(getScriptParameters(parameters));
+        final Map<String, Prefetch> prefetches = getPrefetches();
+        if (prefetches != null) {
+            prefetches.put(getRandomName(), new Prefetch(CompletableFuture.completedFuture(evaluation), null, null));
+        }
+        return toChoices(evaluation.value);
+    }
+
+    /**
+     * Get the value of this parameter in the UI once the page is rendered, before the user changes anything.
+     *
+     * @param parameters values of the referenced parameters
+     * @return the value, or {@code null} if it is not known before the page is rendered
+     */
+    @CheckForNull
+    String getInitialValue(Map<Object, Object> parameters) {
+        return getValueForUI(ChoiceEntry.toUI(ChoiceEntry.of(getRenderChoices(parameters))), "");
+    }
+
+    /**
+     * @return the script evaluations started by {@link #prefetchChoices()} in the current request, or {@code null}
+     */
+    @CheckForNull
+    @SuppressWarnings("unchecked")
+    private static Map<String, Prefetch> getPrefetches() {
+        final StaplerRequest request = Stapler.getCurrentRequest();
+        if (request == null) {
+            return null;
+        }
+        final Object prefetches = request.getAttribute(PREFETCH_ATTRIBUTE);
+        return prefetches instanceof Map ? (Map<String, Prefetch>) prefetches : null;
+    }
+
+    /**
+     * @return the evaluation of this parameter started, or done, in the current request, if any
+     */
+    @CheckForNull
+    private Prefetch findPrefetch() {
+        final Map<String, Prefetch> prefetches = getPrefetches();
+        return prefetches == null ? null : prefetches.get(getRandomName());
+    }
+
+    /**
+     * Wait for the result of an evaluation started in the current request. The result is kept in the request, as
+     * the parameter may be rendered with it after its value is computed by {@link CascadeUpdate}.
+     */
+    private Evaluation awaitPrefetch(Prefetch prefetch) {
+        final Integer timeout = this.scriptTimeout;
+        Evaluation evaluation;
+        try {
+            evaluation = ScriptExecutor.get(prefetch.future, timeout == null ? 0 : timeout, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.log(Level.WARNING, String.format("Script for parameter '%s' did not complete: timed out", getName()));
+            final List<Object> cacheKey = getCacheKey(new LinkedHashMap<>(prefetch.parameters));
+            evaluation = new Evaluation(evalInsteadOfScript(getResultCache(), cacheKey, prefetch.helperParameters),
+                    false);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error executing script for dynamic parameter", e);
+            evaluation = new Evaluation(Collections.emptyMap(), false);
+        }
+        final Map<String, Prefetch> prefetches = getPrefetches();
+        // the evaluations already replaced by their result have no helper parameters
+        if (prefetches != null && prefetch.helperParameters != null) {
+            prefetches.put(getRandomName(), new Prefetch(CompletableFuture.completedFuture(evaluation), null, null));
+        }
+        return evaluation;
+    }
+
     /*
      * (non-Javadoc)
      * @see org.biouno.unochoice.ScriptableParameter#getChoices(java.util.Map)
      */
     @Override
-    @SuppressWarnings("unchecked") // due to Web + Java and scripts integration
     public Map<Object, Object> getChoices(Map<Object, Object> parameters) {
-        final Object value = eval(parameters);
+        return toChoices(eval(getScriptParameters(parameters)).value);
+    }
+
+    /**
+     * Get the parameter values the script is evaluated with, for the given values of the referenced parameters.
+     *
+     * @param parameters values of the referenced parameters
+     * @return the values the script is evaluated with
+     * @since 2.8.4
+     */
+    protected Map<Object, Object> getScriptParameters(Map<Object, Object> parameters) {
+        return parameters;
+    }
+
+    @SuppressWarnings("unchecked") // due to Web + Java and scripts integration
+    private Map<Object, Object> toChoices(Object value) {
         if (value instanceof Map) {
             Map<Object, Object> map = (Map<Object, Object>) value;
             visibleItemCount = map.size();
@@ -263,23 +794,148 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
     }
 
     public String getChoicesAsString(Map<Object, Object> parameters) {
-        final Object value = eval(parameters);
+        final Object value = eval(parameters).value;
         if (value != null)
             return value.toString();
         return "";
     }
 
+    private Evaluation eval(Map<Object, Object> parameters) {
+        return eval(parameters, null);
+    }
+
+    /**
+     * Evaluates the script.
+     *
+     * @param parameters values of the parameters
+     * @param helperParameters the helper parameters, or {@code null} to compute them in the current thread
+     * @return the value returned by the script, or the value used instead if the script did not complete
+     */
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    private Object eval(Map<Object, Object> parameters) {
+    private Evaluation eval(Map<Object, Object> parameters, @CheckForNull Map<Object, Object> helperParameters) {
+        final BoundedCache<List<Object>, Object> cache = getResultCache();
+        // the parameters may change while the script runs, and they are part of the cache and evaluation keys
+        final Map<Object, Object> values = new LinkedHashMap<>(parameters);
+        List<Object> cacheKey = null;
+        if (cache != null) {
+            cacheKey = getCacheKey(values);
+            final Object cachedValue = cache.get(cacheKey);
+            if (cachedValue != null) {
+                return new Evaluation(cachedValue, true);
+            }
+        }
+        Map<Object, Object> scriptParameters = values;
         try {
-            Map<Object, Object> scriptParameters = getHelperParameters();
-            scriptParameters.putAll(parameters);
+            // the helper parameters may depend on the current request, so they are computed in this thread.
+            // Parameter values take precedence over the helper parameters, neither is copied
+            scriptParameters = new LayeredMap<>(values,
+                    helperParameters != null ? helperParameters : getHelperParameters());
             final ScriptCallback<Exception> callback = new ScriptCallback(getName(), script, scriptParameters);
-            return callback.call();
+            final Integer timeout = this.scriptTimeout;
+            final Object project = scriptParameters.get(JENKINS_PROJECT_VARIABLE_NAME);
+            final Object value;
+            if (Stapler.getCurrentRequest() == null) {
+                // builds started from the CLI, by timers or by other plug-ins do not hold a request thread, and
+                // must not get the fallback value because the pool is busy: the script runs in this thread
+                value = callback.call();
+            } else {
+                final List<Object> evaluationKey = Arrays.asList(script, getName(),
+                        project instanceof Job ? ((Job<?, ?>) project).getFullName() : null, values,
+                        Jenkins.getAuthentication2().getName());
+                value = EVALUATIONS_IN_FLIGHT.call(evaluationKey, callback::call,
+                        timeout == null ? 0 : timeout, TimeUnit.SECONDS);
+            }
+            if (cache != null) {
+                // callers may change the returned value, the cached value is not changed
+                final Object cachedValue = toUnmodifiable(value);
+                cache.put(cacheKey, cachedValue);
+                return new Evaluation(cachedValue, true);
+            }
+            return new Evaluation(value, true);
+        } catch (TimeoutException | RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, String.format("Script for parameter '%s' did not complete: %s", getName(),
+                    e instanceof TimeoutException ? "timed out" : "too many scripts running"));
+            return new Evaluation(evalInsteadOfScript(cache, cacheKey, scriptParameters), false);
+        } catch (CancellationException e) {
+            // the request was superseded by a newer request, see LatestRequests
+            LOGGER.log(Level.FINE, String.format("Script for parameter '%s' no longer needed", getName()));
+            return new Evaluation(Collections.emptyMap(), false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.FINE, String.format("Script for parameter '%s' was interrupted", getName()));
+            return new Evaluation(Collections.emptyMap(), false);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error executing script for dynamic parameter", e);
-            return Collections.emptyMap();
+            return new Evaluation(Collections.emptyMap(), false);
+        }
+    }
+
+    /**
+     * @return an unmodifiable copy of the value if it is a map or a list, the value itself otherwise
+     */
+    @SuppressWarnings("unchecked")
+    private static Object toUnmodifiable(Object value) {
+        if (value instanceof Map) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>((Map<Object, Object>) value));
+        }
+        if (value instanceof List) {
+            return Collections.unmodifiableList(new ArrayList<>((List<Object>) value));
         }
+        return value;
+    }
+
+    /**
+     * Get a value for a script that could not complete: the last cached result, if any, or the result of the
+     * fallback script.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private Object evalInsteadOfScript(BoundedCache<List<Object>, Object> cache, List<Object> cacheKey,
+            Map<Object, Object> scriptParameters) {
+        if (cache != null) {
+            final Object staleValue = cache.getStale(cacheKey);
+            if (staleValue != null) {
+                return staleValue;
+            }
+        }
+        if (script instanceof GroovyScript) {
+            try {
+                final Object value = ((GroovyScript) script).evalFallback((Map) scriptParameters);
+                if (value != null) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Error executing fallback script for dynamic parameter", e);
+            }
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Get the value this parameter would have in the UI after being rendered with the given choices, before the
+     * user selects anything.
+     *
+     * @param choices the result of {@link AbstractCascadableParameter#getChoicesForUI(Map)}
+     * @param currentValue the value of the parameter in the UI before the update
+     * @return the value of the parameter
+     * @since 2.8.4
+     */
+    @SuppressWarnings("unchecked")
+    protected String getValueForUI(Object choices, String currentValue) {
+        if (!(choices instanceof List) || ((List<Object>) choices).size() < 3) {
+            return currentValue;
+        }
+        final List<Object> values = (List<Object>) ((List<Object>) choices).get(1);
+        final List<Object> flags = (List<Object>) ((List<Object>) choices).get(2);
+        final List<String> selected = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            if ((((Number) flags.get(i)).intValue() & ChoiceEntry.FLAG_SELECTED) != 0) {
+                selected.add(String.valueOf(values.get(i)));
+            }
+        }
+        if (PARAMETER_TYPE_SINGLE_SELECT.equals(getChoiceType()) && selected.isEmpty() && !values.isEmpty()) {
+            return String.valueOf(values.get(0));
+        }
+        return StringUtils.join(selected, ',');
     }
 
     /*
@@ -298,7 +954,14 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
         return stringParameterValue;
     }
 
-    private static String findDefaultValue(Map<Object, Object> choices) {
+    /**
+     * Find the default value for the given choices: the keys of the selected entries, separated by commas, or the
+     * first key when no entry is selected.
+     *
+     * @param choices choices
+     * @return the default value, or {@code null} if there are no choices
+     */
+    static String findDefaultValue(Map<Object, Object> choices) {
         if (choices == null || choices.isEmpty()) {
             return null;
         }
@@ -341,4 +1004,78 @@ public abstract class AbstractScriptableParameter extends AbstractUnoChoiceParam
         return Math.min(visibleItemCount, DEFAULT_MAX_VISIBLE_ITEM_COUNT);
     }
 
+    /**
+     * A script evaluation started by {@link #prefetchChoices()} or {@link #prefetchChoices(Map)}, or its result.
+     */
+    private static final class Prefetch {
+        private final Future<Evaluation> future;
+        private final Map<Object, Object> parameters;
+        private final Map<Object, Object> helperParameters;
+
+        private Prefetch(Future<Evaluation> future, Map<Object, Object> parameters,
+                Map<Object, Object> helperParameters) {
+            this.future = future;
+            this.parameters = parameters;
+            this.helperParameters = helperParameters;
+        }
+    }
+
+    /**
+     * The value of a script evaluation, and whether the script completed. When it did not, e.g. because it failed
+     * or timed out, the value is the one used instead, such as the result of the fallback script.
+     */
+    private static final class Evaluation {
+        private final Object value;
+        private final boolean complete;
+
+        private Evaluation(Object value, boolean complete) {
+            this.value = value;
+            this.complete = complete;
+        }
+    }
+
+    // --- listeners
+
+    /**
+     * Drops the cached script results of the parameters of a job when its configuration is saved, and the job
+     * remembered by the parameters when the job is renamed, moved or deleted.
+     *
+     * @since 2.8.4
+     */
+    @Extension
+    public static final class ScriptableParameterItemListener extends ItemListener {
+        @Override
+        public void onUpdated(Item item) {
+            for (AbstractScriptableParameter parameter : getScriptableParameters(item)) {
+                parameter.clearResultCache();
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            for (AbstractScriptableParameter parameter : getScriptableParameters(item)) {
+                parameter.clearProjectReference();
+            }
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            for (AbstractScriptableParameter parameter : getScriptableParameters(item)) {
+                parameter.clearProjectReference();
+            }
+        }
+
+        private static List<AbstractScriptableParameter> getScriptableParameters(Item item) {
+            final List<AbstractScriptableParameter> parameters = new ArrayList<>();
+            if (item instanceof Job) {
+                for (ParameterDefinition parameterDefinition : Utils.getParameterDefinitions((Job<?, ?>) item)) {
+                    if (parameterDefinition instanceof AbstractScriptableParameter) {
+                        parameters.add((AbstractScriptableParameter) parameterDefinition);
+                    }
+                }
+            }
+            return parameters;
+        }
+    }
+
 }
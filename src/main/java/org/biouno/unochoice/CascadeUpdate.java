@@ -0,0 +1,329 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.biouno.unochoice.util.LatestRequests;
+import org.biouno.unochoice.util.Utils;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParameterValue;
+
+/**
+ * Evaluates the cascadable parameters affected by a change in the UI, or rendered with the page, in dependency
+ * order.
+ *
+ * @since 2.8.4
+ */
+final class CascadeUpdate {
+
+    /**
+     * Request attribute with the initial values of the parameters.
+     */
+    private static final String INITIAL_VALUES_ATTRIBUTE = CascadeUpdate.class.getName() + ".initialValues";
+
+    private CascadeUpdate() {}
+
+    /**
+     * Evaluates every cascadable parameter of the job of the given parameter, that depends, directly or not, on
+     * the changed parameter. The evaluation stops at the parameters whose value does not change, as the
+     * parameters referencing them would get the same choices: a parameter is evaluated only if the value of a
+     * parameter it references changed.
+     *
+     * @param parameter the parameter that received the request
+     * @param changedParameter name of the parameter that changed in the UI
+     * @param values current values of the parameters in the UI. Updated with the values of the evaluated parameters
+     * @param hashes hashes of the choices displayed in the UI, by parameter name. A parameter whose choices have
+     * the same hash is not changed in the UI, and is left out of the result
+     * @param request the request from the UI
+     * @return map with the name of each evaluated parameter and its choices for the UI, or {@code null} if the
+     * request was superseded
+     */
+    @CheckForNull
+    static Map<String, Object> evaluate(AbstractCascadableParameter parameter, String changedParameter,
+            Map<Object, Object> values, Map<Object, Object> hashes, LatestRequests.Request request) {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        final Set<String> changed = new HashSet<>();
+        changed.add(changedParameter);
+        for (AbstractCascadableParameter affected : sort(affectedParameters(parameter, changedParameter))) {
+            if (request.isSuperseded()) {
+                return null;
+            }
+            if (!references(affected, changed)) {
+                continue;
+            }
+            final Map<Object, Object> referencedValues = new LinkedHashMap<>();
+            for (String referenced : affected.getReferencedParametersAsArray()) {
+                referencedValues.put(referenced, ObjectUtils.toString(values.get(referenced), ""));
+            }
+            final Object choices = affected.getChoicesForUI(referencedValues);
+            final String hash = ChoiceEntry.getHash(choices);
+            if (hash != null && hash.equals(hashes.get(affected.getName()))) {
+                continue;
+            }
+            result.put(affected.getName(), choices);
+            final String currentValue = ObjectUtils.toString(values.get(affected.getName()), "");
+            final String value = affected.getValueForUI(choices, currentValue);
+            values.put(affected.getName(), value);
+            if (!value.equals(currentValue)) {
+                changed.add(affected.getName());
+            }
+        }
+        return request.isSuperseded() ? null : result;
+    }
+
+    /**
+     * Get the initial values of the parameters of the job of the given parameter, computed once per request by
+     * {@link #computeInitialValues(AbstractCascadableParameter)}.
+     *
+     * @param parameter the parameter being rendered
+     * @return the initial values by parameter name, or {@code null} outside of a request
+     */
+    @CheckForNull
+    @SuppressWarnings("unchecked")
+    static Map<String, String> initialValues(AbstractCascadableParameter parameter) {
+        final StaplerRequest request = Stapler.getCurrentRequest();
+        if (request == null) {
+            return null;
+        }
+        final Object cached = request.getAttribute(INITIAL_VALUES_ATTRIBUTE);
+        if (cached instanceof Map) {
+            return (Map<String, String>) cached;
+        }
+        // the scripts of the parameters that do not reference other parameters are evaluated concurrently
+        parameter.prefetchChoices();
+        final Map<String, String> initialValues = computeInitialValues(parameter);
+        request.setAttribute(INITIAL_VALUES_ATTRIBUTE, initialValues);
+        return initialValues;
+    }
+
+    /**
+     * Computes the values of the parameters of the job of the given parameter in the page, before the user changes
+     * anything. Only the parameters referenced by cascadable parameters, and the cascadable parameters themselves,
+     * are computed. Parameters that are not Active Choices parameters have their default value. Cascadable
+     * parameters are evaluated in dependency order, with the values of the parameters they reference, and the
+     * cascadable parameters that do not depend on each other are evaluated concurrently. Parameters whose value is
+     * only known once the page is rendered, or sensitive, are left out, as well as the parameters referencing them.
+     *
+     * <p>The choices evaluated are kept in the current request, and the parameters are rendered with them.</p>
+     *
+     * @param parameter the parameter being rendered
+     * @return the initial values by parameter name
+     */
+    static Map<String, String> computeInitialValues(AbstractCascadableParameter parameter) {
+        final Map<String, String> values = new HashMap<>();
+        final Job<?, ?> job = parameter.findProject();
+        if (job == null) {
+            return values;
+        }
+        final List<ParameterDefinition> definitions = Utils.getParameterDefinitions(job);
+        final List<AbstractCascadableParameter> cascadables = new ArrayList<>();
+        final Set<String> referenced = new HashSet<>();
+        for (ParameterDefinition definition : definitions) {
+            if (definition instanceof AbstractCascadableParameter) {
+                final AbstractCascadableParameter cascadable = definition.getName().equals(parameter.getName())
+                        ? parameter : (AbstractCascadableParameter) definition;
+                cascadables.add(cascadable);
+                referenced.addAll(Arrays.asList(cascadable.getReferencedParametersAsArray()));
+            }
+        }
+        for (ParameterDefinition definition : definitions) {
+            // the default value of some parameters, e.g. listing the branches of a repository, is costly
+            if (definition instanceof AbstractCascadableParameter || !referenced.contains(definition.getName())) {
+                continue;
+            }
+            String value = null;
+            if (definition instanceof AbstractScriptableParameter) {
+                value = ((AbstractScriptableParameter) definition).getInitialValue(Collections.emptyMap());
+            } else {
+                final ParameterValue defaultValue = definition.getDefaultParameterValue();
+                // only plain text values are rendered as is in the page
+                if (defaultValue != null && !defaultValue.isSensitive() && defaultValue.getValue() instanceof String) {
+                    value = (String) defaultValue.getValue();
+                }
+            }
+            if (value != null) {
+                values.put(definition.getName(), value);
+            }
+        }
+        final List<AbstractCascadableParameter> pending = sort(cascadables);
+        while (!pending.isEmpty()) {
+            // the parameters whose referenced parameters are all evaluated
+            final List<AbstractCascadableParameter> ready = new ArrayList<>();
+            for (AbstractCascadableParameter cascadable : pending) {
+                if (!referencesAny(cascadable, pending)) {
+                    ready.add(cascadable);
+                }
+            }
+            if (ready.isEmpty()) {
+                // cycle, take the first parameter in dependency order
+                ready.add(pending.get(0));
+            }
+            pending.removeAll(ready);
+            final Map<AbstractCascadableParameter, Map<Object, Object>> readyValues = new LinkedHashMap<>();
+            for (AbstractCascadableParameter cascadable : ready) {
+                final Map<Object, Object> referencedValues = referencedValues(cascadable, values);
+                readyValues.put(cascadable, referencedValues);
+                if (referencedValues != null && ready.size() > 1) {
+                    cascadable.prefetchChoices(referencedValues);
+                }
+            }
+            for (Map.Entry<AbstractCascadableParameter, Map<Object, Object>> entry : readyValues.entrySet()) {
+                final AbstractCascadableParameter cascadable = entry.getKey();
+                final String value = entry.getValue() != null ? cascadable.getInitialValue(entry.getValue()) : null;
+                if (value != null) {
+                    values.put(cascadable.getName(), value);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get the values of the parameters referenced by the given parameter.
+     *
+     * @param parameter a cascadable parameter
+     * @param values parameter values by name
+     * @return the values of the referenced parameters, in the order they are referenced, or {@code null} if the
+     * value of a referenced parameter is missing
+     */
+    @CheckForNull
+    static Map<Object, Object> referencedValues(AbstractCascadableParameter parameter, Map<String, String> values) {
+        final Map<Object, Object> referencedValues = new LinkedHashMap<>();
+        for (String referenced : parameter.getReferencedParametersAsArray()) {
+            final String value = values.get(referenced);
+            if (value == null) {
+                return null;
+            }
+            referencedValues.put(referenced, value);
+        }
+        return referencedValues;
+    }
+
+    /**
+     * Find the cascadable parameters that depend, directly or not, on the changed parameter. The given parameter
+     * is always included, as it references the changed parameter.
+     *
+     * @return the affected parameters, in the order they are defined in the job
+     */
+    private static List<AbstractCascadableParameter> affectedParameters(AbstractCascadableParameter parameter,
+            String changedParameter) {
+        final List<AbstractCascadableParameter> cascadables = new ArrayList<>();
+        final Job<?, ?> job = parameter.findProject();
+        if (job != null) {
+            for (ParameterDefinition definition : Utils.getParameterDefinitions(job)) {
+                if (definition instanceof AbstractCascadableParameter) {
+                    // the parameter that received the request may be a different instance, e.g. after a reload
+                    cascadables.add(definition.getName().equals(parameter.getName())
+                            ? parameter : (AbstractCascadableParameter) definition);
+                }
+            }
+        }
+        if (!cascadables.contains(parameter)) {
+            cascadables.add(parameter);
+        }
+
+        final Set<String> changed = new HashSet<>();
+        changed.add(changedParameter);
+        changed.add(parameter.getName());
+        final Set<AbstractCascadableParameter> affected = new LinkedHashSet<>();
+        affected.add(parameter);
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (AbstractCascadableParameter cascadable : cascadables) {
+                if (!affected.contains(cascadable) && !cascadable.getName().equals(changedParameter)
+                        && references(cascadable, changed)) {
+                    affected.add(cascadable);
+                    changed.add(cascadable.getName());
+                    found = true;
+                }
+            }
+        }
+        final List<AbstractCascadableParameter> ordered = new ArrayList<>(cascadables);
+        ordered.retainAll(affected);
+        return ordered;
+    }
+
+    /**
+     * Sort the parameters so that each parameter comes after the parameters it references. Parameters in a cycle
+     * keep their order, and are evaluated once.
+     */
+    private static List<AbstractCascadableParameter> sort(List<AbstractCascadableParameter> parameters) {
+        final List<AbstractCascadableParameter> sorted = new ArrayList<>(parameters.size());
+        final List<AbstractCascadableParameter> pending = new ArrayList<>(parameters);
+        while (!pending.isEmpty()) {
+            AbstractCascadableParameter next = null;
+            for (AbstractCascadableParameter candidate : pending) {
+                if (!referencesAny(candidate, pending)) {
+                    next = candidate;
+                    break;
+                }
+            }
+            if (next == null) {
+                // cycle, take the first parameter defined
+                next = pending.get(0);
+            }
+            pending.remove(next);
+            sorted.add(next);
+        }
+        return sorted;
+    }
+
+    private static boolean references(AbstractCascadableParameter parameter, Set<String> names) {
+        for (String referenced : parameter.getReferencedParametersAsArray()) {
+            if (names.contains(referenced)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean referencesAny(AbstractCascadableParameter parameter,
+            List<AbstractCascadableParameter> others) {
+        final List<String> referenced = Arrays.asList(parameter.getReferencedParametersAsArray());
+        for (AbstractCascadableParameter other : others) {
+            if (other != parameter && referenced.contains(other.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.biouno.unochoice.util.Utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import net.sf.json.JSONArray;
+
+/**
+ * A choice returned by the script of a parameter, with the :selected and :disabled suffixes already parsed.
+ * Scripts mark the choices with suffixes in the value of each entry (or in the list element), and the key of the
+ * entry may carry them too. They are parsed once, when the choices are evaluated, instead of by every Jelly
+ * template and by the JavaScript code.
+ *
+ * @since 2.8.4
+ */
+public final class ChoiceEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Flag of a selected choice, in the list of flags returned by {@link #toUI(List)}.
+     */
+    public static final int FLAG_SELECTED = 1;
+
+    /**
+     * Flag of a disabled choice, in the list of flags returned by {@link #toUI(List)}.
+     */
+    public static final int FLAG_DISABLED = 2;
+
+    private final String value;
+    private final String label;
+    private final boolean selected;
+    private final boolean disabled;
+
+    public ChoiceEntry(@NonNull String value, @NonNull String label, boolean selected, boolean disabled) {
+        this.value = value;
+        this.label = label;
+        this.selected = selected;
+        this.disabled = disabled;
+    }
+
+    /**
+     * Create a choice from an entry of the map returned by a script.
+     *
+     * @param key key of the entry, used as the value of the choice
+     * @param value value of the entry, used as the label of the choice
+     * @return the choice
+     */
+    public static @NonNull ChoiceEntry of(Object key, Object value) {
+        return new ChoiceEntry(
+                Utils.escapeSelectedAndDisabled(key),
+                Utils.escapeSelectedAndDisabled(value),
+                Utils.isSelected(value),
+                Utils.isDisabled(value));
+    }
+
+    /**
+     * Create the choices from the map returned by a script.
+     *
+     * @param choices choices, as returned by {@link AbstractScriptableParameter#getChoices()}
+     * @return an unmodifiable list with the choices, in the same order
+     */
+    public static @NonNull List<ChoiceEntry> of(Map<?, ?> choices) {
+        if (choices == null || choices.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<ChoiceEntry> entries = new ArrayList<>(choices.size());
+        for (Map.Entry<?, ?> entry : choices.entrySet()) {
+            entries.add(of(entry.getKey(), entry.getValue()));
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Convert the choices to the format used by the UI: a list with the labels, a list with the values, a list
+     * with the flags of the choices, where {@link #FLAG_SELECTED} and {@link #FLAG_DISABLED} are set for the
+     * selected and the disabled choices, and a hash of the choices. The UI keeps the choices displayed when they
+     * have the same hash.
+     *
+     * @param choices choices
+     * @return the labels, the values, the flags and the hash of the choices
+     */
+    public static @NonNull List<Object> toUI(@NonNull List<ChoiceEntry> choices) {
+        return toUI(choices, true);
+    }
+
+    /**
+     * Convert the choices to the format used by the UI, as in {@link #toUI(List)}, computing their hash or not.
+     *
+     * @param choices choices
+     * @param hashed whether to compute the hash of the choices
+     * @return the labels, the values, the flags and the hash of the choices, or {@code null} instead of the hash
+     */
+    static @NonNull List<Object> toUI(@NonNull List<ChoiceEntry> choices, boolean hashed) {
+        final List<String> labels = new ArrayList<>(choices.size());
+        final List<String> values = new ArrayList<>(choices.size());
+        final List<Integer> flags = new ArrayList<>(choices.size());
+        final MessageDigest digest = hashed ? newDigest() : null;
+        for (ChoiceEntry choice : choices) {
+            final int flag = (choice.selected ? FLAG_SELECTED : 0) | (choice.disabled ? FLAG_DISABLED : 0);
+            labels.add(choice.label);
+            values.add(choice.value);
+            flags.add(flag);
+            if (digest != null) {
+                update(digest, choice.label);
+                update(digest, choice.value);
+                digest.update((byte) flag);
+            }
+        }
+        return Arrays.asList(labels, values, flags, digest != null ? Util.toHexString(digest.digest()) : null);
+    }
+
+    /**
+     * Get the hash of choices in the format used by the UI.
+     *
+     * @param choices choices, as returned by {@link #toUI(List)}, or a string for reference parameters rendered as
+     * text or HTML
+     * @return the hash, or {@code null} if the choices have none
+     */
+    public static @CheckForNull String getHash(Object choices) {
+        if (choices instanceof List && ((List<?>) choices).size() > 3) {
+            final Object hash = ((List<?>) choices).get(3);
+            return hash instanceof String ? (String) hash : null;
+        }
+        return null;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String text) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        // the length separates the texts, so that e.g. "ab", "c" and "a", "bc" have different hashes
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    /**
+     * Convert the choices to the format used by the UI, as in {@link #toUI(List)}, serialized as JSON. Used by the
+     * Jelly templates to hand the choices of a virtual list to the JavaScript code.
+     *
+     * @param choices choices
+     * @return the labels, the values and the flags of the choices, as a JSON array
+     */
+    public static @NonNull String toJson(@NonNull List<ChoiceEntry> choices) {
+        return JSONArray.fromObject(toUI(choices)).toString();
+    }
+
+    /**
+     * @return the value of the choice, submitted when it is selected
+     */
+    public @NonNull String getValue() {
+        return value;
+    }
+
+    /**
+     * @return the label of the choice, displayed to the user
+     */
+    public @NonNull String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return {@code true} if the choice is selected by default
+     */
+    public boolean isSelected() {
+        return selected;
+    }
+
+    /**
+     * @return {@code true} if the choice cannot be selected by the user
+     */
+    public boolean isDisabled() {
+        return disabled;
+    }
+
+    @Override
+    public String toString() {
+        return "ChoiceEntry [value=" + value + ", label=" + label + ", selected=" + selected + ", disabled="
+                + disabled + "]";
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * A search index over the choices of a parameter, used to send the choices to the UI one page at a time. The
+ * choices are matched by their labels, ignoring case, like the filter in the UI.
+ *
+ * @since 2.8.4
+ */
+final class ChoiceIndex {
+
+    private final List<ChoiceEntry> entries;
+    /**
+     * Lower case labels of the choices, computed once.
+     */
+    private final String[] searchKeys;
+    /**
+     * Positions of the selected choices.
+     */
+    private final int[] selected;
+    /**
+     * The last query and its matches. Users type one character at a time, so a query often extends the last one,
+     * and is matched only against the choices that matched the last query.
+     */
+    private volatile Matches lastMatches;
+
+    ChoiceIndex(@NonNull List<ChoiceEntry> entries) {
+        this.entries = entries;
+        this.searchKeys = new String[entries.size()];
+        final List<Integer> selectedPositions = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            final ChoiceEntry entry = entries.get(i);
+            searchKeys[i] = normalize(entry.getLabel());
+            if (entry.isSelected()) {
+                selectedPositions.add(i);
+            }
+        }
+        this.selected = selectedPositions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return the number of choices
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get a page of the choices matching the query. The first page of the unfiltered choices also contains the
+     * selected choices that are in later pages, after the other choices, so that the default selection is not lost.
+     *
+     * @param query text to look for in the labels of the choices, or {@code null} or empty for every choice
+     * @param offset position of the first choice of the page, among the matching choices
+     * @param limit maximum number of choices in the page
+     * @return the page
+     */
+    @NonNull
+    Page page(@CheckForNull String query, int offset, int limit) {
+        final String normalizedQuery = normalize(query);
+        final int[] matches = match(normalizedQuery);
+        final int total = matches == null ? entries.size() : matches.length;
+        final int from = Math.min(Math.max(0, offset), total);
+        final int to = (int) Math.min(total, (long) from + Math.max(0, limit));
+        final List<ChoiceEntry> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(entries.get(matches == null ? i : matches[i]));
+        }
+        if (matches == null && from == 0) {
+            for (int position : selected) {
+                if (position >= to) {
+                    page.add(entries.get(position));
+                }
+            }
+        }
+        return new Page(Collections.unmodifiableList(page), total, to);
+    }
+
+    /**
+     * @return the positions of the choices matching the query, or {@code null} if every choice matches
+     */
+    @CheckForNull
+    private int[] match(@NonNull String query) {
+        if (query.isEmpty()) {
+            return null;
+        }
+        final Matches last = this.lastMatches;
+        if (last != null && last.query.equals(query)) {
+            return last.positions;
+        }
+        final int[] candidates = last != null && query.startsWith(last.query) ? last.positions : null;
+        final int count = candidates == null ? searchKeys.length : candidates.length;
+        final int[] positions = new int[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            final int position = candidates == null ? i : candidates[i];
+            if (searchKeys[position].contains(query)) {
+                positions[found++] = position;
+            }
+        }
+        final int[] result = Arrays.copyOf(positions, found);
+        this.lastMatches = new Matches(query, result);
+        return result;
+    }
+
+    private static String normalize(@CheckForNull String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Matches {
+        private final String query;
+        private final int[] positions;
+
+        private Matches(String query, int[] positions) {
+            this.query = query;
+            this.positions = positions;
+        }
+    }
+
+    /**
+     * A page of choices.
+     */
+    static final class Page {
+        private final List<ChoiceEntry> entries;
+        private final int total;
+        private final int next;
+
+        private Page(List<ChoiceEntry> entries, int total, int next) {
+            this.entries = entries;
+            this.total = total;
+            this.next = next;
+        }
+
+        /**
+         * @return the choices of the page
+         */
+        @NonNull
+        List<ChoiceEntry> getEntries() {
+            return entries;
+        }
+
+        /**
+         * @return the number of choices matching the query
+         */
+        int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return the offset of the next page
+         */
+        int getNext() {
+            return next;
+        }
+
+        /**
+         * Convert the page to the format used by the UI: the lists returned by {@link ChoiceEntry#toUI(List)},
+         * followed by the number of choices matching the query and the offset of the next page. The hash is
+         * {@code null}, and not computed, as the choices of the other pages are not part of it.
+         *
+         * @return the page in the format used by the UI
+         */
+        @NonNull
+        List<Object> toUI() {
+            final List<Object> ui = new ArrayList<>(ChoiceEntry.toUI(entries, false));
+            ui.add(total);
+            ui.add(next);
+            return ui;
+        }
+    }
+}
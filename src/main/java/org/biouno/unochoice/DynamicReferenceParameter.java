@@ -24,7 +24,9 @@
 
 package org.biouno.unochoice;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import org.apache.commons.lang.BooleanUtils;
@@ -131,6 +133,45 @@ public class DynamicReferenceParameter extends AbstractCascadableParameter {
         return result;
     }
 
+    /**
+     * Text and HTML elements are rendered with the result of {@link #getChoicesAsString(Map)}, lists with the
+     * values and the keys of the result of {@link #getChoices(Map)}, as is, like the lists rendered with the page.
+     */
+    @Override
+    protected Object getChoicesForUI(Map<Object, Object> parameters) {
+        if (ELEMENT_TYPE_TEXT_BOX.equals(choiceType) || ELEMENT_TYPE_FORMATTED_HTML.equals(choiceType)
+                || ELEMENT_TYPE_FORMATTED_HIDDEN_HTML.equals(choiceType)) {
+            return getChoicesAsString(parameters);
+        }
+        final Map<Object, Object> choices = getChoices(parameters);
+        return Arrays.asList(choices.values(), choices.keySet());
+    }
+
+    /**
+     * The value of a reference parameter comes from its hidden value field, or from the HTML returned by its
+     * script, so it is not changed by an update.
+     */
+    @Override
+    protected String getValueForUI(Object choices, String currentValue) {
+        return currentValue;
+    }
+
+    /**
+     * The value of a reference parameter depends on the HTML rendered in the page, so it is not known before.
+     */
+    @Override
+    String getInitialValue(Map<Object, Object> parameters) {
+        return null;
+    }
+
+    /**
+     * The script of a reference parameter is evaluated when the parameter is rendered, not for its initial value.
+     */
+    @Override
+    void prefetchChoices(Map<Object, Object> parameters) {
+        // nothing to prefetch
+    }
+
     // --- descriptor
 
     @Extension
@@ -0,0 +1,266 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.biouno.unochoice.model.Script;
+import org.biouno.unochoice.util.LatestRequests;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.bind.JavaScriptMethod;
+
+import hudson.Extension;
+
+/**
+ * <p>A choice parameter whose script receives the text typed by the user in the filter, so that the script can
+ * search its data source, such as the search API of a registry, instead of returning every choice for the UI to
+ * filter them.</p>
+ *
+ * <p>The text typed is available to the script in the {@code typeaheadQuery} variable, empty until the user types
+ * something, and the maximum number of choices to return in the {@code typeaheadLimit} variable. Like a
+ * {@link CascadeChoiceParameter}, it is updated when its referenced parameters change.</p>
+ *
+ * @since 2.8.4
+ */
+public class TypeaheadChoiceParameter extends AbstractCascadableParameter {
+
+    /*
+     * Serial UID.
+     */
+    private static final long serialVersionUID = -6217417536640573627L;
+
+    /**
+     * Name of the variable with the text typed by the user.
+     */
+    public static final String QUERY_VARIABLE_NAME = "typeaheadQuery";
+    /**
+     * Name of the variable with the maximum number of choices the script should return.
+     */
+    public static final String LIMIT_VARIABLE_NAME = "typeaheadLimit";
+    /**
+     * Default maximum number of choices returned for a query.
+     */
+    public static final int DEFAULT_RESULT_LIMIT = 100;
+    /**
+     * Default number of characters typed before the script is evaluated.
+     */
+    public static final int DEFAULT_MIN_QUERY_LENGTH = 1;
+    /**
+     * Default delay, in milliseconds, between the last key typed and the evaluation of the script.
+     */
+    public static final int DEFAULT_DEBOUNCE = 300;
+
+    /**
+     * Choice type.
+     */
+    private final String choiceType;
+
+    /**
+     * Maximum number of choices returned for a query.
+     */
+    private Integer resultLimit;
+
+    /**
+     * Number of characters typed before the script is evaluated.
+     */
+    private Integer minQueryLength;
+
+    /**
+     * Delay, in milliseconds, between the last key typed and the evaluation of the script.
+     */
+    private Integer debounce;
+
+    /**
+     * Constructor called from Jelly with parameters.
+     *
+     * @param name name
+     * @param description description
+     * @param randomName parameter random generated name (uuid)
+     * @param script script
+     * @param choiceType choice type
+     * @param referencedParameters referenced parameters
+     */
+    @DataBoundConstructor
+    public TypeaheadChoiceParameter(String name, String description, String randomName, Script script,
+            String choiceType, String referencedParameters) {
+        super(name, description, randomName, script, referencedParameters);
+        this.choiceType = StringUtils.defaultIfBlank(choiceType, PARAMETER_TYPE_SINGLE_SELECT);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.biouno.unochoice.AbstractUnoChoiceParameter#getChoiceType()
+     */
+    @Override
+    public String getChoiceType() {
+        return choiceType;
+    }
+
+    /**
+     * The filter is always rendered, as the user types the query in it.
+     *
+     * @return {@code true}
+     */
+    public boolean getFilterable() {
+        return true;
+    }
+
+    /**
+     * @return maximum number of choices returned for a query
+     */
+    public int getResultLimit() {
+        return resultLimit == null ? DEFAULT_RESULT_LIMIT : resultLimit;
+    }
+
+    /**
+     * @param resultLimit maximum number of choices returned for a query, {@code null} or zero for the default
+     */
+    @DataBoundSetter
+    public void setResultLimit(Integer resultLimit) {
+        this.resultLimit = (resultLimit != null && resultLimit > 0) ? Math.min(resultLimit, MAX_PAGE_SIZE) : null;
+    }
+
+    /**
+     * @return number of characters typed before the script is evaluated
+     */
+    public int getMinQueryLength() {
+        return minQueryLength == null ? DEFAULT_MIN_QUERY_LENGTH : minQueryLength;
+    }
+
+    /**
+     * @param minQueryLength number of characters typed before the script is evaluated, {@code null} for the default
+     */
+    @DataBoundSetter
+    public void setMinQueryLength(Integer minQueryLength) {
+        this.minQueryLength = (minQueryLength != null && minQueryLength >= 0) ? minQueryLength : null;
+    }
+
+    /**
+     * @return delay, in milliseconds, between the last key typed and the evaluation of the script
+     */
+    public int getDebounce() {
+        return debounce == null ? DEFAULT_DEBOUNCE : debounce;
+    }
+
+    /**
+     * @param debounce delay, in milliseconds, between the last key typed and the evaluation of the script,
+     * {@code null} for the default
+     */
+    @DataBoundSetter
+    public void setDebounce(Integer debounce) {
+        this.debounce = (debounce != null && debounce >= 0) ? debounce : null;
+    }
+
+    /**
+     * The query is empty, and the limit is the result limit, unless given in the parameter values.
+     */
+    @Override
+    protected Map<Object, Object> getScriptParameters(Map<Object, Object> parameters) {
+        final Map<Object, Object> values = new LinkedHashMap<>(parameters);
+        values.putIfAbsent(QUERY_VARIABLE_NAME, "");
+        values.putIfAbsent(LIMIT_VARIABLE_NAME, getResultLimit());
+        return values;
+    }
+
+    /**
+     * At most {@link #getResultLimit()} choices are sent to the UI, even if the script returns more.
+     */
+    @Override
+    protected Object getChoicesForUI(Map<Object, Object> parameters) {
+        final List<ChoiceEntry> choices = ChoiceEntry.of(getChoices(parameters));
+        final int limit = getResultLimit();
+        return ChoiceEntry.toUI(choices.size() > limit ? choices.subList(0, limit) : choices);
+    }
+
+    /**
+     * At most {@link #getResultLimit()} choices are rendered with the page, as in the UI.
+     */
+    @Override
+    public List<ChoiceEntry> getChoiceEntries() {
+        final List<ChoiceEntry> choices = super.getChoiceEntries();
+        final int limit = getResultLimit();
+        return choices.size() > limit ? choices.subList(0, limit) : choices;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.biouno.unochoice.CascadableParameter#getChoicesForUI()
+     */
+    @Override
+    @JavaScriptMethod
+    @SuppressWarnings("unchecked")
+    public List<Object> getChoicesForUI() {
+        return (List<Object>) getChoicesForUI(getParameters());
+    }
+
+    /**
+     * Get the choices for the text typed by the user, and the given values of the referenced parameters.
+     *
+     * <p>A request is superseded by a request of the same page for the same parameter with a higher sequence
+     * number, e.g. once the user typed more text.</p>
+     *
+     * @param parameters values of the referenced parameters, encoded as in {@link #doUpdate(String)}
+     * @param query text typed by the user
+     * @param page identifier of the page sending the request, or {@code null} if requests are not superseded
+     * @param sequence sequence number of the request in the page
+     * @return the choices, in the same format as {@link #getChoicesForUI()}, or {@code null} if the request was
+     * superseded before it started
+     */
+    @JavaScriptMethod
+    public Object getTypeaheadChoicesForUI(String parameters, String query, String page, long sequence) {
+        try (LatestRequests.Request request = startRequest(page, "typeahead/" + getName(), sequence)) {
+            if (request.isSuperseded()) {
+                return null;
+            }
+            final Map<Object, Object> values = parseParameters(parameters);
+            values.put(QUERY_VARIABLE_NAME, StringUtils.defaultString(query));
+            values.put(LIMIT_VARIABLE_NAME, getResultLimit());
+            return getChoicesForUI(values);
+        }
+    }
+
+    // --- descriptor
+
+    @Extension
+    @Symbol({"activeChoiceTypeahead"})
+    public static final class DescriptorImpl extends UnoChoiceParameterDescriptor {
+
+        @Override
+        public String getDisplayName() {
+            return "Active Choices Typeahead Parameter";
+        }
+
+        @Override
+        public String getHelpFile() {
+            return "/plugin/uno-choice/help/parameter/active-choices-typeahead-choice.html";
+        }
+    }
+
+}
@@ -29,13 +29,13 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 
+import org.biouno.unochoice.util.CompiledScriptCache;
 import org.biouno.unochoice.util.SafeHtmlExtendedMarkupFormatter;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
@@ -45,7 +45,6 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import groovy.lang.Binding;
 import hudson.Extension;
 import hudson.PluginManager;
-import hudson.Util;
 import jenkins.model.Jenkins;
 
 /**
@@ -148,36 +147,11 @@ public class GroovyScript extends AbstractScript {
         if (secureScript == null) {
             return null;
         }
-        final Jenkins instance = Jenkins.getInstanceOrNull();
-        ClassLoader cl = null;
-        if (instance != null) {
-            try {
-                PluginManager pluginManager = instance.getPluginManager();
-                cl = pluginManager.uberClassLoader;
-            } catch (Exception e) {
-                LOGGER.log(Level.FINEST, e.getMessage(), e);
-            }
-        }
-        if (cl == null) {
-            cl = Thread.currentThread().getContextClassLoader();
-        }
-
-        final Binding context = new Binding();
-
-        // @SuppressWarnings("unchecked")
-        final Map<String, String> envVars = System.getenv();
-        for (Entry<String, String> parameter : parameters.entrySet()) {
-            Object value = parameter.getValue();
-            if (value != null) {
-                if (value instanceof String) {
-                    value = Util.replaceMacro((String) value, envVars);
-                }
-                context.setVariable(parameter.getKey(), value);
-            }
-        }
+        final ClassLoader cl = getClassLoader();
+        final Binding context = createBinding(parameters);
 
         try {
-            Object returnValue = secureScript.evaluate(cl, context, null);
+            Object returnValue = CompiledScriptCache.evaluate(secureScript, cl, context);
             // sanitize the text if running script in sandbox mode
             if (secureScript.isSandbox()) {
                 returnValue = resolveTypeAndSanitize(returnValue);
@@ -187,12 +161,7 @@ public class GroovyScript extends AbstractScript {
             if (this.secureFallbackScript != null) {
                 try {
                     LOGGER.log(Level.FINEST, "Fallback to default script...", re);
-                    Object returnValue = secureFallbackScript.evaluate(cl, context, null);
-                    // sanitize the text if running script in sandbox mode
-                    if (secureFallbackScript.isSandbox()) {
-                        returnValue = resolveTypeAndSanitize(returnValue);
-                    }
-                    return returnValue;
+                    return evalFallback(cl, context);
                 } catch (Exception e2) {
                     LOGGER.log(Level.WARNING, "Error executing fallback script", e2);
                     throw new RuntimeException("Failed to evaluate fallback script: " + e2.getMessage(), e2);
@@ -204,6 +173,56 @@ public class GroovyScript extends AbstractScript {
         }
     }
 
+    /**
+     * Evaluates only the fallback script, e.g. when the script could not complete in time.
+     *
+     * @param parameters parameters, bound as variables in the script
+     * @return the value returned by the fallback script, or {@code null} if there is no fallback script
+     * @throws RuntimeException if the fallback script fails
+     * @since 2.8.4
+     */
+    public Object evalFallback(Map<String, String> parameters) throws RuntimeException {
+        if (secureFallbackScript == null) {
+            return null;
+        }
+        try {
+            return evalFallback(getClassLoader(), createBinding(parameters));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to evaluate fallback script: " + e.getMessage(), e);
+        }
+    }
+
+    private Object evalFallback(ClassLoader cl, Binding context) throws Exception {
+        Object returnValue = CompiledScriptCache.evaluate(secureFallbackScript, cl, context);
+        // sanitize the text if running script in sandbox mode
+        if (secureFallbackScript.isSandbox()) {
+            returnValue = resolveTypeAndSanitize(returnValue);
+        }
+        return returnValue;
+    }
+
+    private static ClassLoader getClassLoader() {
+        final Jenkins instance = Jenkins.getInstanceOrNull();
+        ClassLoader cl = null;
+        if (instance != null) {
+            try {
+                PluginManager pluginManager = instance.getPluginManager();
+                cl = pluginManager.uberClassLoader;
+            } catch (Exception e) {
+                LOGGER.log(Level.FINEST, e.getMessage(), e);
+            }
+        }
+        if (cl == null) {
+            cl = Thread.currentThread().getContextClassLoader();
+        }
+        return cl;
+    }
+
+    private static Binding createBinding(Map<String, String> parameters) {
+        // variables are read through the parameters and the global node properties, when the script reads them
+        return new Binding(new ScriptVariables(parameters));
+    }
+
     /**
      * Resolves the type of the return value, and then applies the sanitization to
      * the value before returning it.
@@ -220,7 +239,7 @@ public class GroovyScript extends AbstractScript {
      * @return sanitized value
      * @throws RuntimeException if the type of the given {@code returnValue} is not String, List, or Map
      */
-    private Object resolveTypeAndSanitize(Object returnValue) {
+    Object resolveTypeAndSanitize(Object returnValue) {
         if (returnValue instanceof CharSequence) {
             return sanitizeString(returnValue);
         } else if (returnValue instanceof List) {
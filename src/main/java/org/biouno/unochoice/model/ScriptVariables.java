@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.model;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.biouno.unochoice.util.LazyValue;
+import org.biouno.unochoice.util.Utils;
+
+import hudson.Util;
+import jenkins.model.Jenkins;
+
+/**
+ * <p>The variables of a Groovy script, read through these layers: the given parameters, then the global node
+ * properties. Nothing is copied up front: a variable is resolved the first time the script reads it, and kept
+ * for the following reads.</p>
+ *
+ * <p>When resolved, {@link LazyValue}s are computed, and environment variables are expanded in strings that
+ * contain a {@code $}. Parameters whose value is {@code null} are not bound.</p>
+ *
+ * @since 2.8.4
+ */
+final class ScriptVariables extends AbstractMap<String, Object> {
+
+    /**
+     * Marks a variable that was looked up and not found, or removed by the script.
+     */
+    private static final Object ABSENT = new Object();
+
+    private final Map<?, ?> parameters;
+    private final Map<String, Object> variables = new LinkedHashMap<>();
+    private Map<String, Object> globalNodeProperties;
+
+    /**
+     * @param parameters parameters, read but never modified
+     */
+    ScriptVariables(Map<?, ?> parameters) {
+        this.parameters = parameters != null ? parameters : Collections.emptyMap();
+    }
+
+    @Override
+    public Object get(Object key) {
+        final Object value = resolve(key);
+        return value == ABSENT ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return resolve(key) != ABSENT;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        final Object previous = variables.put(key, value);
+        return previous == ABSENT ? null : previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        final Object previous = variables.put((String) key, ABSENT);
+        return previous == ABSENT ? null : previous;
+    }
+
+    /**
+     * Resolves every variable, as the script reads all of them.
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        final Set<String> names = new LinkedHashSet<>(variables.keySet());
+        for (Object name : parameters.keySet()) {
+            if (name instanceof String) {
+                names.add((String) name);
+            }
+        }
+        names.addAll(getGlobalNodeProperties().keySet());
+        final Map<String, Object> resolved = new LinkedHashMap<>();
+        for (String name : names) {
+            final Object value = resolve(name);
+            if (value != ABSENT) {
+                resolved.put(name, value);
+            }
+        }
+        return resolved.entrySet();
+    }
+
+    private Object resolve(Object key) {
+        if (!(key instanceof String)) {
+            return ABSENT;
+        }
+        final String name = (String) key;
+        Object value = variables.get(name);
+        if (value == null && !variables.containsKey(name)) {
+            value = lookup(name);
+            variables.put(name, value);
+        }
+        return value;
+    }
+
+    private Object lookup(String name) {
+        Object value = expand(LazyValue.resolve(parameters.get(name)));
+        if (value != null) {
+            return value;
+        }
+        final Map<String, Object> properties = getGlobalNodeProperties();
+        value = properties.get(name);
+        return value != null ? expand(value) : ABSENT;
+    }
+
+    private static Object expand(Object value) {
+        if (value instanceof String && ((String) value).indexOf('$') >= 0) {
+            return Util.replaceMacro((String) value, System.getenv());
+        }
+        return value;
+    }
+
+    private Map<String, Object> getGlobalNodeProperties() {
+        if (globalNodeProperties == null) {
+            globalNodeProperties = Jenkins.getInstanceOrNull() != null
+                    ? Utils.getGlobalNodeProperties()
+                    : Collections.emptyMap();
+        }
+        return globalNodeProperties;
+    }
+}
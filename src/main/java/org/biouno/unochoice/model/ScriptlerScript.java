@@ -24,10 +24,15 @@
 
 package org.biouno.unochoice.model;
 
+import java.io.File;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import org.biouno.unochoice.util.BoundedCache;
+import org.biouno.unochoice.util.CompiledScriptCache;
+import org.biouno.unochoice.util.LazyValue;
+import org.biouno.unochoice.util.LayeredMap;
 import org.biouno.unochoice.util.Utils;
 import org.jenkinsci.Symbol;
 import org.jenkinsci.plugins.scriptler.ScriptlerManagement;
@@ -44,6 +49,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.Util;
 import hudson.model.ManagementLink;
+import hudson.util.VariableResolver;
 import jenkins.model.Jenkins;
 import net.sf.json.JSONArray;
 
@@ -60,6 +66,12 @@ public class ScriptlerScript extends AbstractScript {
      */
     private static final long serialVersionUID = 6600927513119226354L;
 
+    /**
+     * The scripts read from Scriptler, keyed by script ID and sandbox flag.
+     */
+    private static final BoundedCache<List<Object>, ResolvedScript> RESOLVED_SCRIPTS =
+            new BoundedCache<>(CompiledScriptCache.MAX_ENTRIES);
+
     /**
      * The ID of the Scriptler script.
      * @deprecated Not used now that we use the {@code ScriptlerBuilder}.
@@ -67,7 +79,8 @@ public class ScriptlerScript extends AbstractScript {
     @Deprecated
     private String scriptlerScriptId;
     /**
-     * Map is not serializable, but LinkedHashMap is. Ignore static analysis errors
+     * Parameters of the old configuration, either empty or a LinkedHashMap. Not the values the script is evaluated
+     * with, which are given to {@link #eval(Map)}.
      * @deprecated Not used now that we use the {@code ScriptlerBuilder}.
      */
     @Deprecated
@@ -194,20 +207,30 @@ public class ScriptlerScript extends AbstractScript {
      */
     @Override
     public Object eval(Map<String, String> parameters) {
-        final Map<String, String> envVars = Utils.getSystemEnv();
-        Map<String, String> evaledParameters = new LinkedHashMap<>(envVars);
+        // the parameters of the Scriptler script are built only once per evaluation
+        final Map<String, String> scriptlerParameters = this.getParameters();
+        final Map<String, String> evaledParameters;
         // if we have any parameter that came from UI, let's eval and use them
         if (parameters != null && !parameters.isEmpty()) {
-            // fill our map with the given parameters
-            evaledParameters.putAll(parameters);
-            // and now try to expand env vars
-            for (String key : this.getParameters().keySet()) {
-                String value = this.getParameters().get(key);
-                value = Util.replaceMacro(value, parameters);
-                evaledParameters.put(key, value);
+            // and now try to expand env vars, global node properties are no longer part of the given parameters
+            final Map<String, String> scriptlerValues = new LinkedHashMap<>(scriptlerParameters.size());
+            if (!scriptlerParameters.isEmpty()) {
+                @SuppressWarnings({ "rawtypes", "unchecked" })
+                final Map<String, Object> macroValues = new LayeredMap<String, Object>((Map) parameters,
+                        (Map) Utils.getGlobalNodeProperties());
+                // the values are not all strings, such as the typeahead limit, and the lazy ones are only computed
+                // when a macro refers to them
+                final VariableResolver<String> resolver = name -> {
+                    final Object value = LazyValue.resolve(macroValues.get(name));
+                    return value == null ? null : value.toString();
+                };
+                for (Map.Entry<String, String> parameter : scriptlerParameters.entrySet()) {
+                    scriptlerValues.put(parameter.getKey(), Util.replaceMacro(parameter.getValue(), resolver));
+                }
             }
+            evaledParameters = new LayeredMap<>(scriptlerValues, parameters, Utils.getSystemEnv());
         } else {
-            evaledParameters.putAll(this.getParameters());
+            evaledParameters = new LayeredMap<>(scriptlerParameters, Utils.getSystemEnv());
         }
         return this.toGroovyScript().eval(evaledParameters);
     }
@@ -221,14 +244,54 @@ public class ScriptlerScript extends AbstractScript {
      * Jenkins administrator. In this case it won't use the Groovy Sandbox. This is useful if
      * the Groovy script needs access to API not available in the Sandbox (e.g. Grapes).
      *
+     * The script file is read again only when it changes, or when it moves in the Scriptler catalog.
+     *
      * @return a GroovyScript
      */
     public GroovyScript toGroovyScript() {
-        final Script scriptler = ScriptHelper.getScript(getScriptlerScriptId(), true);
+        final String scriptId = getScriptlerScriptId();
+        final Script scriptler = ScriptHelper.getScript(scriptId, false);
         if (scriptler == null) {
             throw new RuntimeException("Missing required scriptler!");
         }
-        return new GroovyScript(new SecureGroovyScript(scriptler.script, this.isSandboxed, null), null);
+        final File file = new File(ScriptlerManagement.getScriptDirectory(), scriptler.getScriptPath());
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final List<Object> key = Arrays.asList(scriptId, this.isSandboxed);
+        ResolvedScript resolved = RESOLVED_SCRIPTS.get(key);
+        if (resolved == null || !resolved.isCurrent(file, lastModified, length)) {
+            final Script scriptlerWithSource = ScriptHelper.getScript(scriptId, true);
+            if (scriptlerWithSource == null) {
+                throw new RuntimeException("Missing required scriptler!");
+            }
+            resolved = new ResolvedScript(file, lastModified, length, new GroovyScript(
+                    new SecureGroovyScript(scriptlerWithSource.script, this.isSandboxed, null), null));
+            if (lastModified != 0) {
+                RESOLVED_SCRIPTS.put(key, resolved);
+            }
+        }
+        return resolved.groovyScript;
+    }
+
+    /**
+     * The {@link GroovyScript} of a Scriptler script, and the state of the script file it was read from.
+     */
+    private static final class ResolvedScript {
+        private final File file;
+        private final long lastModified;
+        private final long length;
+        private final GroovyScript groovyScript;
+
+        private ResolvedScript(File file, long lastModified, long length, GroovyScript groovyScript) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.groovyScript = groovyScript;
+        }
+
+        private boolean isCurrent(File file, long lastModified, long length) {
+            return this.file.equals(file) && this.lastModified == lastModified && this.length == length;
+        }
     }
 
     // --- descriptor
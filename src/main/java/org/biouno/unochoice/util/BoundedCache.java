@@ -0,0 +1,191 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * A small thread-safe cache, bounded in size and with an optional time-to-live for its entries. When
+ * the cache is full, the least recently used entry is evicted.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @since 2.8.4
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<K, CacheEntry<V>> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a cache whose entries never expire.
+     *
+     * @param maxSize maximum number of entries
+     */
+    public BoundedCache(int maxSize) {
+        this(maxSize, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Create a cache whose entries expire after the given time-to-live.
+     *
+     * @param maxSize maximum number of entries
+     * @param ttl time-to-live of each entry, or zero for entries that never expire
+     * @param unit time unit of the time-to-live
+     */
+    public BoundedCache(int maxSize, long ttl, @NonNull TimeUnit unit) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = unit.toNanos(Math.max(0, ttl));
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() > BoundedCache.this.maxSize) {
+                    onEviction(eldest.getKey(), eldest.getValue().value);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get a value from the cache, counting a hit or a miss.
+     *
+     * @param key key
+     * @return the cached value, or {@code null} if there is none or if it has expired
+     */
+    public synchronized @CheckForNull V get(@NonNull K key) {
+        final CacheEntry<V> entry = entries.get(key);
+        if (entry == null || entry.isExpired(System.nanoTime())) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Get a value from the cache even if it has already expired. Does not affect the hit and miss counters.
+     *
+     * @param key key
+     * @return the last value stored for the key, or {@code null} if it has been evicted
+     */
+    public synchronized @CheckForNull V getStale(@NonNull K key) {
+        final CacheEntry<V> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Store a value in the cache. {@code null} values are ignored.
+     *
+     * @param key key
+     * @param value value
+     */
+    public synchronized void put(@NonNull K key, @CheckForNull V value) {
+        if (value == null) {
+            return;
+        }
+        final long expiresAt = ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0;
+        entries.put(key, new CacheEntry<>(value, expiresAt));
+    }
+
+    /**
+     * Remove a single entry from the cache.
+     *
+     * @param key key
+     */
+    public synchronized void invalidate(@NonNull K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Remove every entry from the cache. The hit and miss counters are kept.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Called when an entry is evicted because the cache is full. Does nothing by default.
+     *
+     * @param key key of the evicted entry
+     * @param value value of the evicted entry
+     */
+    protected void onEviction(@NonNull K key, @NonNull V value) {
+    }
+
+    /**
+     * @return number of entries in the cache, including expired entries not evicted yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return maximum number of entries
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of lookups that found a valid entry
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups that did not find a valid entry
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static final class CacheEntry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private CacheEntry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+}
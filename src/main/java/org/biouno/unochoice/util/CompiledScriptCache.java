@@ -0,0 +1,198 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.RejectedAccessException;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.GroovySandbox;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ApprovalContext;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+import jenkins.util.SystemProperties;
+
+/**
+ * <p>Evaluates {@link SecureGroovyScript}s compiling each script text only once.</p>
+ *
+ * <p>{@link SecureGroovyScript#evaluate(ClassLoader, Binding, hudson.model.TaskListener)} parses and compiles the
+ * script on every call, creating a new class each time. Here the compiled classes are kept in a bounded cache,
+ * keyed by the class loader, the sandbox flag and the script text, and a new script instance is created for each
+ * evaluation with its own {@link Binding}.</p>
+ *
+ * <p>The same security checks are applied on every evaluation: scripts running outside the sandbox must still be
+ * approved (approvals may have been revoked since the class was compiled), and sandboxed scripts are compiled with
+ * the secure compiler configuration and run within a {@link GroovySandbox}, their rejected signatures being listed
+ * for approval. Scripts with additional classpath entries are delegated to {@link SecureGroovyScript} as the
+ * classpath needs to be approved too.</p>
+ *
+ * <p>Unlike {@link SecureGroovyScript}, the class loaders of the scripts are kept along with their classes, and
+ * released when the classes are evicted. {@link SecureGroovyScript} does not tell whether
+ * {@link SecureGroovyScript#configuring(ApprovalContext)} was called, so callers must call it, as
+ * {@link org.biouno.unochoice.model.GroovyScript} does, for the scripts to be listed for approval.</p>
+ *
+ * @since 2.8.4
+ */
+public final class CompiledScriptCache {
+
+    /**
+     * Maximum number of compiled script classes kept in memory.
+     */
+    public static final int MAX_ENTRIES = SystemProperties.getInteger(CompiledScriptCache.class.getName() + ".maxEntries", 500);
+
+    private static final Logger LOGGER = Logger.getLogger(CompiledScriptCache.class.getName());
+
+    private static final BoundedCache<Key, Class<? extends Script>> CACHE = new BoundedCache<Key, Class<? extends Script>>(MAX_ENTRIES) {
+        @Override
+        protected void onEviction(@NonNull Key key, @NonNull Class<? extends Script> scriptClass) {
+            // release the meta class information Groovy keeps about the class and its closures, and the class
+            // loader, so that they can be unloaded
+            ClassLoader loader = scriptClass.getClassLoader();
+            if (loader instanceof GroovyClassLoader.InnerLoader) {
+                loader = loader.getParent();
+            }
+            if (loader instanceof GroovyClassLoader) {
+                final GroovyClassLoader groovyClassLoader = (GroovyClassLoader) loader;
+                for (Class<?> loaded : groovyClassLoader.getLoadedClasses()) {
+                    InvokerHelper.removeClass(loaded);
+                }
+                groovyClassLoader.clearCache();
+                try {
+                    groovyClassLoader.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Could not close the class loader of a script", e);
+                }
+            }
+            InvokerHelper.removeClass(scriptClass);
+        }
+    };
+
+    private CompiledScriptCache() {}
+
+    /**
+     * Evaluates the script with the given binding.
+     *
+     * @param secureScript script
+     * @param loader parent class loader for the script class
+     * @param binding script binding
+     * @return value returned by the script
+     * @throws Exception if the script is not approved, fails to compile, or throws an exception
+     */
+    public static Object evaluate(@NonNull SecureGroovyScript secureScript, @NonNull ClassLoader loader,
+            @NonNull Binding binding) throws Exception {
+        if (!secureScript.getClasspath().isEmpty()) {
+            return secureScript.evaluate(loader, binding, null);
+        }
+        final String text = secureScript.getScript();
+        if (secureScript.isSandbox()) {
+            final Class<? extends Script> scriptClass = getScriptClass(loader, true, text);
+            try (GroovySandbox.Scope scope = new GroovySandbox().enter()) {
+                return InvokerHelper.createScript(scriptClass, binding).run();
+            } catch (RejectedAccessException e) {
+                // lists the signature in the In-process Script Approval page, so that it can be approved
+                throw ScriptApproval.get().accessRejected(e, ApprovalContext.create());
+            }
+        }
+        // throws an exception if the script is not approved (anymore)
+        ScriptApproval.get().using(text, GroovyLanguage.get());
+        final Class<? extends Script> scriptClass = getScriptClass(loader, false, text);
+        return InvokerHelper.createScript(scriptClass, binding).run();
+    }
+
+    /**
+     * Drops every compiled script class.
+     */
+    public static void clear() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * @return number of compiled script classes in the cache
+     */
+    public static int size() {
+        return CACHE.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Script> getScriptClass(ClassLoader loader, boolean sandbox, String text) {
+        final Key key = new Key(loader, sandbox, text);
+        Class<? extends Script> scriptClass = CACHE.get(key);
+        if (scriptClass == null) {
+            final GroovyClassLoader groovyClassLoader;
+            if (sandbox) {
+                groovyClassLoader = new GroovyClassLoader(GroovySandbox.createSecureClassLoader(loader),
+                        GroovySandbox.createSecureCompilerConfiguration());
+            } else {
+                groovyClassLoader = new GroovyClassLoader(loader, new CompilerConfiguration());
+            }
+            final String fileName = String.format("ActiveChoicesScript%08x.groovy", text.hashCode());
+            scriptClass = groovyClassLoader.parseClass(text, fileName);
+            CACHE.put(key, scriptClass);
+        }
+        return scriptClass;
+    }
+
+    /**
+     * Cache key. The script hash is computed once per string by {@link String#hashCode()}.
+     */
+    private static final class Key {
+        private final ClassLoader loader;
+        private final boolean sandbox;
+        private final String text;
+        private final int hash;
+
+        private Key(ClassLoader loader, boolean sandbox, String text) {
+            this.loader = loader;
+            this.sandbox = sandbox;
+            this.text = text;
+            this.hash = Objects.hash(System.identityHashCode(loader), sandbox, text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            return loader == other.loader && sandbox == other.sandbox && text.equals(other.text);
+        }
+    }
+}
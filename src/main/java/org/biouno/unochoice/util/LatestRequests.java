@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * <p>Keeps the latest request of each client for the same evaluation, so that the requests it supersedes stop
+ * using the CPU of the controller. Requests are ordered by the sequence number given by the client, not by the
+ * time they arrive.</p>
+ *
+ * <p>Cancellation is cooperative: the thread of the request is never interrupted, as it may be doing I/O for the
+ * web container. When a newer request starts, the request it supersedes stops waiting for the script it
+ * evaluates in a {@link SingleFlight}, which cancels the script unless other requests wait for its result, and
+ * the code checking {@link Request#isSuperseded()} stops.</p>
+ *
+ * @since 2.8.4
+ */
+public final class LatestRequests {
+
+    /**
+     * The request in progress in each thread.
+     */
+    private static final ThreadLocal<Request> CURRENT = new ThreadLocal<>();
+
+    private final ConcurrentMap<String, Request> latest = new ConcurrentHashMap<>();
+
+    /**
+     * Start a request, superseding the request with the same key and a lower sequence number.
+     *
+     * @param key key of the evaluation, including the client, or {@code null} if requests are not tracked
+     * @param sequence sequence number given by the client
+     * @return the request, to close once evaluated. Superseded already if a request with the same key and a
+     * higher sequence number started before
+     */
+    public Request start(@CheckForNull String key, long sequence) {
+        final Request request = new Request(key, sequence);
+        CURRENT.set(request);
+        if (key == null) {
+            return request;
+        }
+        while (true) {
+            final Request current = latest.putIfAbsent(key, request);
+            if (current == null) {
+                return request;
+            }
+            if (current.sequence > sequence) {
+                request.superseded = true;
+                return request;
+            }
+            if (latest.replace(key, current, request)) {
+                current.supersede();
+                return request;
+            }
+        }
+    }
+
+    /**
+     * @return the request in progress in the current thread, or {@code null}
+     */
+    public static @CheckForNull Request current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return number of requests in progress
+     */
+    public int size() {
+        return latest.size();
+    }
+
+    /**
+     * A request in progress in the current thread.
+     */
+    public final class Request implements AutoCloseable {
+        private final String key;
+        private final long sequence;
+        private final Set<Future<?>> waits = new HashSet<>();
+        private boolean superseded;
+
+        private Request(String key, long sequence) {
+            this.key = key;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @return {@code true} if a newer request with the same key started, and this request can be discarded
+         */
+        public synchronized boolean isSuperseded() {
+            return superseded;
+        }
+
+        /**
+         * Cancel the given future when the request is superseded, or right away if it is superseded already. The
+         * future must only be waited for by this request.
+         *
+         * @param future a future the request waits for
+         */
+        public synchronized void cancelWhenSuperseded(@NonNull Future<?> future) {
+            if (superseded) {
+                future.cancel(false);
+            } else {
+                waits.add(future);
+            }
+        }
+
+        /**
+         * Stop cancelling the given future when the request is superseded.
+         *
+         * @param future a future given to {@link #cancelWhenSuperseded(Future)}
+         */
+        public synchronized void forget(@NonNull Future<?> future) {
+            waits.remove(future);
+        }
+
+        private synchronized void supersede() {
+            superseded = true;
+            for (Future<?> future : waits) {
+                future.cancel(false);
+            }
+            waits.clear();
+        }
+
+        /**
+         * Finish the request.
+         */
+        @Override
+        public void close() {
+            if (key != null) {
+                latest.remove(key, this);
+            }
+            if (CURRENT.get() == this) {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * A read-only view of several maps, where the first map containing a key wins. Lookups read through the maps
+ * without copying them. The maps are only merged if the view is iterated.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @since 2.8.4
+ */
+public class LayeredMap<K, V> extends AbstractMap<K, V> {
+
+    private final List<Map<? extends K, ? extends V>> layers;
+
+    /**
+     * @param layers the maps, from the highest to the lowest precedence
+     */
+    @SafeVarargs
+    public LayeredMap(@NonNull Map<? extends K, ? extends V>... layers) {
+        this.layers = Arrays.asList(layers);
+    }
+
+    @Override
+    public V get(Object key) {
+        for (Map<? extends K, ? extends V> layer : layers) {
+            final V value = layer.get(key);
+            if (value != null || layer.containsKey(key)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        for (Map<? extends K, ? extends V> layer : layers) {
+            if (layer.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        // same order as calling putAll from the lowest to the highest precedence
+        final Map<K, V> merged = new LinkedHashMap<>();
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            merged.putAll(layers.get(i));
+        }
+        return merged.entrySet();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.function.Supplier;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * A script variable whose value is computed only when the script first reads it. A variable whose value is
+ * {@code null} is not bound at all.
+ *
+ * @since 2.8.4
+ */
+public final class LazyValue {
+
+    private final Supplier<?> supplier;
+    private boolean computed;
+    private Object value;
+
+    /**
+     * @param supplier computes the value, may return {@code null}
+     */
+    public LazyValue(@NonNull Supplier<?> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * @return the value, computed the first time this method is called
+     */
+    public synchronized @CheckForNull Object get() {
+        if (!computed) {
+            value = supplier.get();
+            computed = true;
+        }
+        return value;
+    }
+
+    /**
+     * @param value a value, possibly lazy
+     * @return the value itself, or the computed value if it is a {@link LazyValue}
+     */
+    public static @CheckForNull Object resolve(@CheckForNull Object value) {
+        return value instanceof LazyValue ? ((LazyValue) value).get() : value;
+    }
+}
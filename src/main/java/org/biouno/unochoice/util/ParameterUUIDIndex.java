@@ -0,0 +1,180 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.biouno.unochoice.AbstractUnoChoiceParameter;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Items;
+import hudson.model.Job;
+import hudson.model.ParameterDefinition;
+import hudson.model.listeners.ItemListener;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+
+/**
+ * <p>Index from the parameter unique ID ({@link AbstractUnoChoiceParameter#getRandomName()}) to the full names of
+ * the jobs that define the parameter.</p>
+ *
+ * <p>The index is filled when the jobs are loaded, and kept up to date when jobs are created, updated, renamed,
+ * moved, or deleted. It may still contain stale entries, e.g. when a parameter is removed from a job, so the callers
+ * must verify that the job still has the parameter. It may also miss entries, e.g. when a parameter is added to a
+ * job without saving its configuration, in which case the callers must look for the job and
+ * {@link #put(String, String)} it.</p>
+ *
+ * <p>A job that has been copied keeps the parameter unique IDs, so one ID may belong to more than one job.</p>
+ *
+ * @since 2.8.4
+ */
+public final class ParameterUUIDIndex {
+
+    private static final Map<String, Set<String>> INDEX = new ConcurrentHashMap<>();
+
+    private ParameterUUIDIndex() {}
+
+    /**
+     * Get the full names of the jobs indexed for a parameter.
+     *
+     * @param parameterUUID parameter unique ID
+     * @return full names of the jobs, possibly stale, or an empty set
+     */
+    public static @NonNull Set<String> get(@NonNull String parameterUUID) {
+        final Set<String> fullNames = INDEX.get(parameterUUID);
+        return fullNames == null ? Set.of() : Set.copyOf(fullNames);
+    }
+
+    /**
+     * Index a parameter of a job.
+     *
+     * @param parameterUUID parameter unique ID
+     * @param fullName full name of the job
+     */
+    public static void put(@NonNull String parameterUUID, @NonNull String fullName) {
+        INDEX.computeIfAbsent(parameterUUID, k -> ConcurrentHashMap.newKeySet()).add(fullName);
+    }
+
+    /**
+     * Remove a stale entry.
+     *
+     * @param parameterUUID parameter unique ID
+     * @param fullName full name of the job that does not have the parameter anymore
+     */
+    public static void remove(@NonNull String parameterUUID, @NonNull String fullName) {
+        INDEX.computeIfPresent(parameterUUID, (k, fullNames) -> {
+            fullNames.remove(fullName);
+            return fullNames.isEmpty() ? null : fullNames;
+        });
+    }
+
+    /**
+     * Index the Active Choices parameters of a job.
+     *
+     * @param job job
+     */
+    public static void index(@NonNull Job<?, ?> job) {
+        for (ParameterDefinition parameterDefinition : Utils.getParameterDefinitions(job)) {
+            if (parameterDefinition instanceof AbstractUnoChoiceParameter) {
+                put(((AbstractUnoChoiceParameter) parameterDefinition).getRandomName(), job.getFullName());
+            }
+        }
+    }
+
+    /**
+     * Drop every entry.
+     */
+    public static void clear() {
+        INDEX.clear();
+    }
+
+    /**
+     * Replace (or remove, when {@code newFullName} is {@code null}) the full name of an item, and of the items
+     * within it, in every entry.
+     */
+    private static void relocate(@NonNull String oldFullName, String newFullName) {
+        final String oldPrefix = oldFullName + "/";
+        for (String parameterUUID : INDEX.keySet()) {
+            INDEX.computeIfPresent(parameterUUID, (k, fullNames) -> {
+                for (String fullName : Set.copyOf(fullNames)) {
+                    if (fullName.equals(oldFullName)) {
+                        fullNames.remove(fullName);
+                        if (newFullName != null) {
+                            fullNames.add(newFullName);
+                        }
+                    } else if (fullName.startsWith(oldPrefix)) {
+                        fullNames.remove(fullName);
+                        if (newFullName != null) {
+                            fullNames.add(newFullName + "/" + fullName.substring(oldPrefix.length()));
+                        }
+                    }
+                }
+                return fullNames.isEmpty() ? null : fullNames;
+            });
+        }
+    }
+
+    /**
+     * Keeps the index up to date.
+     */
+    @Extension
+    public static final class IndexItemListener extends ItemListener {
+        @Override
+        public void onLoaded() {
+            clear();
+            for (Job<?, ?> job : Items.allItems(ACL.SYSTEM2, Jenkins.get(), Job.class)) {
+                index(job);
+            }
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            if (item instanceof Job) {
+                index((Job<?, ?>) item);
+            }
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            if (item instanceof Job) {
+                index((Job<?, ?>) item);
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            relocate(oldFullName, newFullName);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            relocate(item.getFullName(), null);
+        }
+    }
+}
@@ -25,6 +25,7 @@
 package org.biouno.unochoice.util;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 
 import org.owasp.html.HtmlPolicyBuilder;
@@ -36,6 +37,7 @@ import com.google.common.base.Throwables;
 
 import hudson.markup.BasicPolicy;
 import hudson.markup.MarkupFormatter;
+import jenkins.util.SystemProperties;
 
 /**
  * A markup formatter used by the plug-in (only, not available in other parts
@@ -60,10 +62,77 @@ public class SafeHtmlExtendedMarkupFormatter extends MarkupFormatter {
         .toFactory());
 
     /**
-     * Copied from {@link hudson.markup.RawHtmlMarkupFormatter#translate(String, Writer)}
+     * Maximum number of sanitized strings kept in memory.
+     *
+     * @since 2.8.4
+     */
+    public static final int CACHE_SIZE = SystemProperties.getInteger(SafeHtmlExtendedMarkupFormatter.class.getName() + ".cacheSize", 10000);
+
+    /**
+     * Strings longer than this are sanitized every time, instead of being kept in memory.
+     */
+    private static final int MAX_CACHED_LENGTH = 1024;
+
+    /**
+     * Characters that the sanitizer never changes. Anything else, including any non-ASCII character, goes
+     * through the sanitizer. Besides markup characters, the sanitizer also encodes characters such as
+     * {@code =}, {@code +}, {@code @}, the backtick and the curly braces, so they are not listed here.
+     */
+    private static final boolean[] PLAIN_TEXT = new boolean[128];
+
+    static {
+        for (char c : "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 -_.,:;/()[]#%*~!?|$^".toCharArray()) {
+            PLAIN_TEXT[c] = true;
+        }
+    }
+
+    private static final BoundedCache<String, String> SANITIZED = new BoundedCache<>(CACHE_SIZE);
+
+    /**
+     * Strings made only of characters that can not form markup, such as {@code release-1.2.3}, are written
+     * unchanged. Other strings are sanitized, and the result is kept in memory for strings seen again.
      */
     @Override
     public void translate(String markup, Writer output) throws IOException {
+        if (markup != null) {
+            if (isPlainText(markup)) {
+                output.write(markup);
+                return;
+            }
+            if (markup.length() <= MAX_CACHED_LENGTH) {
+                String sanitized = SANITIZED.get(markup);
+                if (sanitized == null) {
+                    final StringWriter writer = new StringWriter(markup.length());
+                    sanitize(markup, writer);
+                    sanitized = writer.toString();
+                    SANITIZED.put(markup, sanitized);
+                }
+                output.write(sanitized);
+                return;
+            }
+        }
+        sanitize(markup, output);
+    }
+
+    /**
+     * @param text text
+     * @return {@code true} if the sanitizer would return the text unchanged
+     */
+    static boolean isPlainText(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c >= PLAIN_TEXT.length || !PLAIN_TEXT[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copied from {@link hudson.markup.RawHtmlMarkupFormatter#translate(String, Writer)}. The policy factory is
+     * shared, but the renderer writes to the given output, so a new one is created for each string.
+     */
+    private static void sanitize(String markup, Writer output) {
         HtmlStreamRenderer renderer = HtmlStreamRenderer.create(
             output,
             // Receives notifications on a failure to write to the output.
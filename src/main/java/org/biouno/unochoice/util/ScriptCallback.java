@@ -47,7 +47,7 @@ public class ScriptCallback<T extends Throwable> implements Callable<Object, T>
 
     private final String name;
     private final Script script;
-    // Map is not serializable, but LinkedHashMap is. Ignore static analysis errors
+    // may be a LayeredMap, which is not serializable, as the callback is only called in the controller
     private final Map<String, String> parameters;
 
     /**
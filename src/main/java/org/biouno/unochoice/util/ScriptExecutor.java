@@ -0,0 +1,226 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.security.core.Authentication;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * <p>Bounded pool where the parameter scripts are evaluated, so that slow scripts do not hold the HTTP request
+ * threads for longer than a timeout.</p>
+ *
+ * <p>The pool uses virtual threads when the JVM supports them. Its size, the number of evaluations waiting in its
+ * queue, and the global timeout can be changed with system properties. Evaluations that are rejected, because the
+ * queue is full, or that time out, fail with a {@link RejectedExecutionException} or a {@link TimeoutException}.</p>
+ *
+ * <p>The evaluations run with the authentication of the calling thread. Evaluations started from a thread of the
+ * pool run on that thread, to avoid waiting on the pool from within the pool.</p>
+ *
+ * @since 2.8.4
+ */
+public final class ScriptExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(ScriptExecutor.class.getName());
+
+    /**
+     * Maximum number of scripts evaluated concurrently.
+     */
+    public static final int POOL_SIZE = SystemProperties.getInteger(ScriptExecutor.class.getName() + ".poolSize", 10);
+    /**
+     * Maximum number of evaluations waiting for a thread of the pool.
+     */
+    public static final int QUEUE_SIZE = SystemProperties.getInteger(ScriptExecutor.class.getName() + ".queueSize", 100);
+    /**
+     * Maximum time, in seconds, that a script can run. Parameters may use shorter timeouts.
+     */
+    public static /* non-final for script console */ int TIMEOUT = SystemProperties
+            .getInteger(ScriptExecutor.class.getName() + ".timeout", 60);
+
+    private static final ThreadLocal<Boolean> EXECUTOR_THREAD = new ThreadLocal<>();
+
+    private static volatile ThreadPoolExecutor executor;
+
+    private ScriptExecutor() {}
+
+    /**
+     * Submit a task to the pool.
+     *
+     * @param task the task
+     * @return the future result of the task
+     * @throws RejectedExecutionException if the queue of the pool is full
+     */
+    public static @NonNull <V> Future<V> submit(@NonNull Callable<V> task) {
+        final Authentication authentication = Jenkins.getAuthentication2();
+        return getExecutor().submit(() -> {
+            EXECUTOR_THREAD.set(Boolean.TRUE);
+            try (ACLContext ignored = ACL.as2(authentication)) {
+                return task.call();
+            } finally {
+                EXECUTOR_THREAD.remove();
+            }
+        });
+    }
+
+    /**
+     * Run a task in the pool, waiting for its result.
+     *
+     * @param task the task
+     * @param timeout maximum time to wait for the result, capped by {@link #TIMEOUT}. Zero or negative values mean
+     * {@link #TIMEOUT}
+     * @param unit time unit of the timeout
+     * @return the result of the task
+     * @throws TimeoutException if the task did not complete in time. The task is cancelled
+     * @throws RejectedExecutionException if the queue of the pool is full
+     * @throws Exception the exception thrown by the task
+     */
+    public static <V> V call(@NonNull Callable<V> task, long timeout, @NonNull TimeUnit unit) throws Exception {
+        if (isExecutorThread()) {
+            return task.call();
+        }
+        return get(submit(task), timeout, unit);
+    }
+
+    /**
+     * Wait for the result of a task submitted to the pool.
+     *
+     * @param future the future result of the task
+     * @param timeout maximum time to wait for the result, capped by {@link #TIMEOUT}. Zero or negative values mean
+     * {@link #TIMEOUT}
+     * @param unit time unit of the timeout
+     * @return the result of the task
+     * @throws TimeoutException if the task did not complete in time. The task is cancelled
+     * @throws Exception the exception thrown by the task
+     */
+    public static <V> V get(@NonNull Future<V> future, long timeout, @NonNull TimeUnit unit) throws Exception {
+        try {
+            return future.get(getTimeoutNanos(timeout, unit), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * @return {@code true} if the current thread is a thread of the pool
+     */
+    public static boolean isExecutorThread() {
+        return Boolean.TRUE.equals(EXECUTOR_THREAD.get());
+    }
+
+    /**
+     * Stops the pool when Jenkins shuts down, interrupting running scripts.
+     */
+    @Terminator
+    public static void shutdown() {
+        final ThreadPoolExecutor current = executor;
+        if (current != null) {
+            executor = null;
+            current.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the exception thrown by the task
+     */
+    static Exception unwrap(ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return e;
+    }
+
+    /**
+     * @return the timeout in nanoseconds, capped by {@link #TIMEOUT}
+     */
+    static long getTimeoutNanos(long timeout, TimeUnit unit) {
+        final long max = TimeUnit.SECONDS.toNanos(Math.max(1, TIMEOUT));
+        if (timeout <= 0) {
+            return max;
+        }
+        return Math.min(unit.toNanos(timeout), max);
+    }
+
+    private static ThreadPoolExecutor getExecutor() {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            synchronized (ScriptExecutor.class) {
+                current = executor;
+                if (current == null) {
+                    final int poolSize = Math.max(1, POOL_SIZE);
+                    current = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(Math.max(1, QUEUE_SIZE)), createThreadFactory());
+                    current.allowCoreThreadTimeOut(true);
+                    executor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Create a factory of virtual threads, using reflection as the plug-in is compiled for older Java versions,
+     * or of daemon platform threads if virtual threads are not available.
+     */
+    private static ThreadFactory createThreadFactory() {
+        final String name = "Active Choices script evaluation";
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + " #", 1L);
+            final Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Virtual threads are not available, using platform threads", e);
+            return new NamingThreadFactory(new DaemonThreadFactory(), name);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * <p>Coalesces concurrent evaluations with the same key: while an evaluation is in flight, callers with the same
+ * key wait for its result instead of starting a new evaluation. Evaluations run in the {@link ScriptExecutor}.</p>
+ *
+ * <p>Each caller waits up to its own timeout, or until its {@link LatestRequests.Request} is superseded. The
+ * evaluation is cancelled only when every caller waiting for it has given up.</p>
+ *
+ * <p>The result is shared by every caller with the same key, so the key must contain everything the evaluation
+ * depends on, including the user when the result may depend on their permissions.</p>
+ *
+ * @param <K> key type
+ * @since 2.8.4
+ */
+public final class SingleFlight<K> {
+
+    private final ConcurrentMap<K, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Evaluate the task, or wait for the result of an evaluation in flight with the same key.
+     *
+     * @param key key of the evaluation
+     * @param task the task
+     * @param timeout maximum time to wait for the result, as in {@link ScriptExecutor#call(Callable, long, TimeUnit)}
+     * @param unit time unit of the timeout
+     * @return the result of the task
+     * @throws TimeoutException if the result was not available in time
+     * @throws CancellationException if the request of the caller was superseded
+     * @throws RejectedExecutionException if the queue of the pool is full
+     * @throws Exception the exception thrown by the task
+     */
+    public Object call(@NonNull K key, @NonNull Callable<?> task, long timeout, @NonNull TimeUnit unit)
+            throws Exception {
+        if (ScriptExecutor.isExecutorThread()) {
+            return task.call();
+        }
+        Flight flight;
+        boolean leader;
+        while (true) {
+            final Flight candidate = new Flight(key);
+            final Flight existing = flights.putIfAbsent(key, candidate);
+            leader = existing == null;
+            flight = leader ? candidate : existing;
+            if (flight.join()) {
+                break;
+            }
+            // abandoned by its callers
+            flights.remove(key, flight);
+        }
+        if (leader) {
+            flight.start(task);
+        }
+        // the caller waits for its own copy of the result, that its request cancels once superseded
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        flight.result.whenComplete((value, t) -> {
+            if (t == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(t);
+            }
+        });
+        final LatestRequests.Request request = LatestRequests.current();
+        if (request != null) {
+            request.cancelWhenSuperseded(result);
+        }
+        try {
+            return result.get(ScriptExecutor.getTimeoutNanos(timeout, unit), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw ScriptExecutor.unwrap(e);
+        } finally {
+            if (request != null) {
+                request.forget(result);
+            }
+            flight.leave();
+        }
+    }
+
+    /**
+     * @return number of evaluations in flight
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    /**
+     * An evaluation, and the number of callers waiting for it.
+     */
+    private final class Flight {
+        private final K key;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private int waiters;
+        private boolean abandoned;
+        private Future<?> task;
+
+        private Flight(K key) {
+            this.key = key;
+        }
+
+        private void start(Callable<?> callable) {
+            try {
+                final Future<?> future = ScriptExecutor.submit(() -> {
+                    try {
+                        result.complete(callable.call());
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    } finally {
+                        flights.remove(key, this);
+                    }
+                    return null;
+                });
+                synchronized (this) {
+                    task = future;
+                    if (abandoned) {
+                        future.cancel(true);
+                    }
+                }
+            } catch (RejectedExecutionException e) {
+                flights.remove(key, this);
+                result.completeExceptionally(e);
+            }
+        }
+
+        private synchronized boolean join() {
+            if (abandoned) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        private synchronized void leave() {
+            if (--waiters == 0 && !result.isDone()) {
+                abandoned = true;
+                flights.remove(key, this);
+                result.cancel(false);
+                if (task != null) {
+                    task.cancel(true);
+                }
+            }
+        }
+    }
+}
@@ -33,9 +33,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,12 +50,18 @@ import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.biouno.unochoice.AbstractUnoChoiceParameter;
 
+import hudson.Extension;
+import hudson.XmlFile;
 import hudson.model.Item;
 import hudson.model.Items;
+import hudson.model.Job;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParametersDefinitionProperty;
 import hudson.model.Project;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
 import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.slaves.EnvironmentVariablesNodeProperty;
 import hudson.slaves.NodeProperty;
 import hudson.slaves.NodePropertyDescriptor;
@@ -72,6 +81,13 @@ public class Utils {
 
     protected static final Logger LOGGER = Logger.getLogger(Utils.class.getName());
 
+    /**
+     * Incremented each time the global configuration is saved.
+     */
+    private static final AtomicLong GLOBAL_CONFIGURATION_VERSION = new AtomicLong();
+
+    private static volatile GlobalNodePropertiesSnapshot globalNodePropertiesSnapshot;
+
     private Utils() {}
 
     // --- methods called from Jelly pages
@@ -103,7 +119,7 @@ public class Utils {
         if (StringUtils.isBlank(text))
             return "";
         if (isSelected(text))
-            return text.replaceAll(":selected$", "").replaceAll(":selected:disabled$", ":disabled");
+            return removeSuffix(text, ":selected", ":selected:disabled", ":disabled");
         return text;
     }
 
@@ -134,10 +150,31 @@ public class Utils {
         if (StringUtils.isBlank(text))
             return "";
         if (isDisabled(text))
-            return text.replaceAll(":disabled$", "").replaceAll(":disabled:selected$", ":selected");
+            return removeSuffix(text, ":disabled", ":disabled:selected", ":selected");
         return text;
     }
 
+    /**
+     * Removes a suffix from a text, or replaces a combined suffix by the remaining suffix. Used instead of regular
+     * expressions, as it is called for every choice rendered.
+     *
+     * @param text text
+     * @param suffix suffix to remove
+     * @param combinedSuffix suffix combined with the other suffix
+     * @param remainingSuffix the other suffix, which replaces the combined suffix
+     * @return text without the suffix
+     */
+    private static String removeSuffix(String text, String suffix, String combinedSuffix, String remainingSuffix) {
+        String result = text;
+        if (result.endsWith(suffix)) {
+            result = result.substring(0, result.length() - suffix.length());
+        }
+        if (result.endsWith(combinedSuffix)) {
+            result = result.substring(0, result.length() - combinedSuffix.length()) + remainingSuffix;
+        }
+        return result;
+    }
+
     /**
      * Escapes the parameter value, removing the :selected and :disabled suffixes.
      *
@@ -210,13 +247,48 @@ public class Utils {
      * @since 1.3
      * @param parameterUUID parameter UUID
      * @return {@code null} if the current project cannot be found
+     * @deprecated only finds {@link Project}s; use {@link #findJobByParameterUUID(String)} instead.
      */
+    @Deprecated
     @SuppressWarnings("rawtypes")
     public static @CheckForNull Project findProjectByParameterUUID(@NonNull String parameterUUID) {
+        final Job<?, ?> job = findJobByParameterUUID(parameterUUID);
+        return job instanceof Project ? (Project) job : null;
+    }
+
+    /**
+     * Find the job, of any type, that defines the parameter with the given UUID.
+     *
+     * @since 2.8.4
+     * @param parameterUUID parameter UUID
+     * @return {@code null} if the job cannot be found, or if the current user cannot read it
+     */
+    public static @CheckForNull Job<?, ?> findJobByParameterUUID(@NonNull String parameterUUID) {
         Authentication auth = Jenkins.getAuthentication();
-        for (Project p : Items.allItems(ACL.SYSTEM, Jenkins.get(), Project.class)) {
-            if (isParameterDefinitionOf(parameterUUID, p) && p.getACL().hasPermission(auth, Item.READ)) {
-                return p;
+        // try the index first, verifying its entries as they may be stale
+        final Set<String> checked = new HashSet<>();
+        for (String fullName : ParameterUUIDIndex.get(parameterUUID)) {
+            final Job<?, ?> job;
+            try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+                job = Jenkins.get().getItemByFullName(fullName, Job.class);
+            }
+            if (job != null && isParameterDefinitionOf(parameterUUID, job)) {
+                if (job.getACL().hasPermission(auth, Item.READ)) {
+                    return job;
+                }
+                checked.add(fullName);
+            } else {
+                ParameterUUIDIndex.remove(parameterUUID, fullName);
+            }
+        }
+        // the index may miss parameters added to a job without saving it, e.g. a readable copy of an
+        // indexed job, so scan every job not verified above
+        for (Job<?, ?> job : Items.allItems(ACL.SYSTEM, Jenkins.get(), Job.class)) {
+            if (!checked.contains(job.getFullName()) && isParameterDefinitionOf(parameterUUID, job)) {
+                ParameterUUIDIndex.put(parameterUUID, job.getFullName());
+                if (job.getACL().hasPermission(auth, Item.READ)) {
+                    return job;
+                }
             }
         }
         return null;
@@ -231,12 +303,8 @@ public class Utils {
      * @param project the project to search for this parameter definition.
      * @return {@code true} if the project contains this parameter definition.
      */
-    private static boolean isParameterDefinitionOf(@NonNull String parameterUUID, @NonNull Project<?, ?> project) {
-        List<ParameterDefinition> parameterDefinitions = new ArrayList<>(getProjectParameterDefinitions(project));
-        for (List<ParameterDefinition> params : getBuildWrapperParameterDefinitions(project).values()) {
-            parameterDefinitions.addAll(params);
-        }
-        for (ParameterDefinition pd : parameterDefinitions) {
+    private static boolean isParameterDefinitionOf(@NonNull String parameterUUID, @NonNull Job<?, ?> project) {
+        for (ParameterDefinition pd : getParameterDefinitions(project)) {
             if (pd instanceof AbstractUnoChoiceParameter) {
                 AbstractUnoChoiceParameter parameterDefinition = (AbstractUnoChoiceParameter) pd;
                 String uuid = parameterDefinition.getRandomName();
@@ -268,24 +336,53 @@ public class Utils {
     }
 
     /**
-     * Get a map with the global node properties.
+     * Get every parameter definition of the given job. That includes the parameters of the job properties and,
+     * for {@link Project}s, the parameters associated with its {@link BuildWrapper}s.
+     *
+     * @since 2.8.4
+     * @param job the job for which the parameter definitions should be found
+     * @return parameter definitions or an empty list
+     */
+    public static @NonNull List<ParameterDefinition> getParameterDefinitions(@NonNull Job<?, ?> job) {
+        final List<ParameterDefinition> parameterDefinitions = new ArrayList<>();
+        final ParametersDefinitionProperty parametersDefinitionProperty = job.getProperty(ParametersDefinitionProperty.class);
+        if (parametersDefinitionProperty != null && parametersDefinitionProperty.getParameterDefinitions() != null) {
+            parameterDefinitions.addAll(parametersDefinitionProperty.getParameterDefinitions());
+        }
+        if (job instanceof Project) {
+            for (List<ParameterDefinition> params : getBuildWrapperParameterDefinitions((Project<?, ?>) job).values()) {
+                parameterDefinitions.addAll(params);
+            }
+        }
+        return parameterDefinitions;
+    }
+
+    /**
+     * Get a map with the global node properties. The map is a read-only snapshot, shared by every caller, and
+     * rebuilt only after the global configuration is saved.
      *
      * @since 1.6
-     * @return map with global node properties
+     * @return read-only map with global node properties
      */
     public static @NonNull Map<String, Object> getGlobalNodeProperties() {
-        Map<String, Object> map = new HashMap<>();
         Jenkins instance = Jenkins.get();
         DescribableList<NodeProperty<?>, NodePropertyDescriptor> globalNodeProperties = instance.getGlobalNodeProperties();
-        if (globalNodeProperties != null) {
-            for (NodeProperty<?> nodeProperty : globalNodeProperties) {
-                if (nodeProperty instanceof EnvironmentVariablesNodeProperty) {
-                    EnvironmentVariablesNodeProperty envNodeProperty = (EnvironmentVariablesNodeProperty) nodeProperty;
-                    map.putAll(envNodeProperty.getEnvVars());
+        GlobalNodePropertiesSnapshot snapshot = globalNodePropertiesSnapshot;
+        final long version = GLOBAL_CONFIGURATION_VERSION.get();
+        if (snapshot == null || snapshot.source != globalNodeProperties || snapshot.version != version) {
+            Map<String, Object> map = new HashMap<>();
+            if (globalNodeProperties != null) {
+                for (NodeProperty<?> nodeProperty : globalNodeProperties) {
+                    if (nodeProperty instanceof EnvironmentVariablesNodeProperty) {
+                        EnvironmentVariablesNodeProperty envNodeProperty = (EnvironmentVariablesNodeProperty) nodeProperty;
+                        map.putAll(envNodeProperty.getEnvVars());
+                    }
                 }
             }
+            snapshot = new GlobalNodePropertiesSnapshot(globalNodeProperties, version, Collections.unmodifiableMap(map));
+            globalNodePropertiesSnapshot = snapshot;
         }
-        return map;
+        return snapshot.properties;
     }
 
     /**
@@ -379,4 +476,34 @@ public class Utils {
         }
         return null;
     }
+
+    /**
+     * The global node properties, as of a version of the global configuration.
+     */
+    private static final class GlobalNodePropertiesSnapshot {
+        private final Object source;
+        private final long version;
+        private final Map<String, Object> properties;
+
+        private GlobalNodePropertiesSnapshot(Object source, long version, Map<String, Object> properties) {
+            this.source = source;
+            this.version = version;
+            this.properties = properties;
+        }
+    }
+
+    /**
+     * Discards the snapshot of the global node properties when the global configuration is saved.
+     *
+     * @since 2.8.4
+     */
+    @Extension
+    public static final class GlobalConfigurationSaveableListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Jenkins) {
+                GLOBAL_CONFIGURATION_VERSION.incrementAndGet();
+            }
+        }
+    }
 }
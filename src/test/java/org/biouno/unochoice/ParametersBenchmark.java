@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.kohsuke.stapler.json.JsonHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+
+/**
+ * Benchmarks for the conversion of the script results into choices, and for the parsing of the parameter
+ * values sent by the UI.
+ *
+ * @since 2.8.4
+ */
+@JmhBenchmark
+public class ParametersBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class JenkinsState extends JmhBenchmarkState {
+
+        @Param({"100", "10000"})
+        public int size;
+
+        ChoiceParameter choiceParameter;
+        CascadeChoiceParameter cascadeParameter;
+        String encodedParameters;
+
+        @Override
+        public void setup() throws Exception {
+            final String script = "return (1.." + size + ").collect { 'value' + it }";
+            ScriptApproval.get().preapprove(script, GroovyLanguage.get());
+            choiceParameter = new ChoiceParameter("param", "description", "random-name",
+                    new GroovyScript(new SecureGroovyScript(script, false, null), null),
+                    ChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+            // serve the list from the result cache, so that only its conversion to choices is measured
+            choiceParameter.setResultCacheTtl(3600);
+            choiceParameter.getChoices(Collections.emptyMap());
+
+            cascadeParameter = new CascadeChoiceParameter("cascade", "description", "random-name",
+                    new GroovyScript(new SecureGroovyScript(script, false, null), null),
+                    ChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "param", false, 1);
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    sb.append(AbstractCascadableParameter.SEPARATOR);
+                }
+                sb.append("param").append(i).append('=').append("value=").append(i);
+            }
+            encodedParameters = sb.toString();
+        }
+    }
+
+    @Benchmark
+    public Map<Object, Object> getChoicesFromList(JenkinsState state) {
+        return state.choiceParameter.getChoices(Collections.emptyMap());
+    }
+
+    @Benchmark
+    public Map<Object, Object> parseParameters(JenkinsState state) {
+        return AbstractCascadableParameter.parseParameters(state.encodedParameters);
+    }
+
+    @Benchmark
+    public Object doUpdate(JenkinsState state) {
+        try {
+            state.cascadeParameter.doUpdate(state.encodedParameters);
+        } catch (JsonHttpResponse e) {
+            // doUpdate always answers with an empty JSON response
+            return e;
+        }
+        return null;
+    }
+}
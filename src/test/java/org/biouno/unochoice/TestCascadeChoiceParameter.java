@@ -26,10 +26,14 @@ package org.biouno.unochoice;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.biouno.unochoice.model.GroovyScript;
@@ -42,10 +46,19 @@ import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.kohsuke.stapler.HttpResponses;
 
+import hudson.model.FreeStyleProject;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.PasswordParameterDefinition;
+import hudson.model.StringParameterDefinition;
+
 public class TestCascadeChoiceParameter {
 
     private final String SCRIPT = "return ['a', 'b']";
     private final String FALLBACK_SCRIPT = "return ['EMPTY!']";
+    private final String COUNTRY_SCRIPT = "return [country + '-north', country + '-south:selected']";
+    private final String CITY_SCRIPT = "return [region + '-city']";
+    private final String THREAD_NAME_SCRIPT = "return [Thread.currentThread().getName()]";
 
     @Rule
     public JenkinsRule j = new JenkinsRule();
@@ -54,6 +67,9 @@ public class TestCascadeChoiceParameter {
     public void setUp() throws Exception {
         ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
         ScriptApproval.get().preapprove(FALLBACK_SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(COUNTRY_SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(CITY_SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(THREAD_NAME_SCRIPT, GroovyLanguage.get());
     }
 
     @Test
@@ -121,4 +137,164 @@ public class TestCascadeChoiceParameter {
         assertEquals(Integer.valueOf(5), param.getFilterLength());
     }
 
+    @Test
+    public void testCascadeUpdate() throws Exception {
+        CascadeChoiceParameter region = new CascadeChoiceParameter("region", "description", "region-random-name",
+                new GroovyScript(new SecureGroovyScript(COUNTRY_SCRIPT, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "country", false, 0);
+        CascadeChoiceParameter city = new CascadeChoiceParameter("city", "description", "city-random-name",
+                new GroovyScript(new SecureGroovyScript(CITY_SCRIPT, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "region", false, 0);
+        FreeStyleProject project = j.createFreeStyleProject();
+        // the dependent parameter is defined first, so it must be sorted after the parameter it references
+        project.addProperty(new ParametersDefinitionProperty(
+                new StringParameterDefinition("country", "br"), city, region));
+
+        Map<String, Object> result = region.getCascadeUpdateForUI("country", "country=ar__LESEP__region=", null,
+                null, 0);
+
+        assertEquals(Arrays.asList("region", "city"), new ArrayList<>(result.keySet()));
+        List<?> regionChoices = (List<?>) result.get("region");
+        assertEquals(Arrays.asList("ar-north", "ar-south"), new ArrayList<>((Collection<?>) regionChoices.get(0)));
+        assertEquals(Arrays.asList(0, ChoiceEntry.FLAG_SELECTED), new ArrayList<>((Collection<?>) regionChoices.get(2)));
+        // the city is evaluated with the region selected by default
+        List<?> cityChoices = (List<?>) result.get("city");
+        assertEquals(Arrays.asList("ar-south-city"), new ArrayList<>((Collection<?>) cityChoices.get(0)));
+        // the shared parameter map is not used
+        assertTrue(region.getParameters().isEmpty());
+    }
+
+    @Test
+    public void testCascadeUpdateStopsAtUnchangedParameters() throws Exception {
+        CascadeChoiceParameter region = new CascadeChoiceParameter("region", "description", "region-random-name",
+                new GroovyScript(new SecureGroovyScript(COUNTRY_SCRIPT, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "country", false, 0);
+        CascadeChoiceParameter city = new CascadeChoiceParameter("city", "description", "city-random-name",
+                new GroovyScript(new SecureGroovyScript(CITY_SCRIPT, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "region", false, 0);
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(
+                new StringParameterDefinition("country", "br"), city, region));
+
+        // the region selected by default is the region selected already, so the city keeps its choices
+        Map<String, Object> result = region.getCascadeUpdateForUI("country", "country=ar__LESEP__region=ar-south",
+                null, null, 0);
+        assertEquals(Arrays.asList("region"), new ArrayList<>(result.keySet()));
+
+        // the choices of the region are the ones displayed already
+        String hash = ChoiceEntry.getHash(result.get("region"));
+        result = region.getCascadeUpdateForUI("country", "country=ar__LESEP__region=ar-north", "region=" + hash,
+                null, 0);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testUpdatedChoices() {
+        CascadeChoiceParameter region = new CascadeChoiceParameter("region", "description", "region-random-name",
+                new GroovyScript(new SecureGroovyScript(COUNTRY_SCRIPT, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "country", false, 0);
+
+        List<?> first = (List<?>) region.getUpdatedChoicesForUI("country=ar", null, 0);
+        List<?> second = (List<?>) region.getUpdatedChoicesForUI("country=br", null, 0);
+
+        assertEquals(Arrays.asList("ar-north", "ar-south"), new ArrayList<>((Collection<?>) first.get(0)));
+        assertEquals(Arrays.asList("br-north", "br-south"), new ArrayList<>((Collection<?>) second.get(0)));
+        assertEquals(Arrays.asList(0, ChoiceEntry.FLAG_SELECTED), new ArrayList<>((Collection<?>) second.get(2)));
+        assertTrue(region.getParameters().isEmpty());
+    }
+
+    @Test
+    public void testChoicesPage() {
+        CascadeChoiceParameter region = new CascadeChoiceParameter("region", "description", "region-random-name",
+                new GroovyScript(new SecureGroovyScript(COUNTRY_SCRIPT, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_MULTI_SELECT, "country", false, 0);
+        region.setPageSize(1);
+
+        // the first page has the selected choice of the second page too
+        List<?> first = (List<?>) region.getUpdatedChoicesForUI("country=ar", null, 0);
+        assertEquals(Arrays.asList("ar-north", "ar-south"), first.get(0));
+        assertNull(first.get(3));
+        assertEquals(2, first.get(4));
+        assertEquals(1, first.get(5));
+        assertEquals("ar-south", region.getValueForUI(first, ""));
+
+        List<?> second = region.getUpdatedChoicesPage("country=ar", "", 1, 0);
+        assertEquals(Arrays.asList("ar-south"), second.get(0));
+        assertEquals(2, second.get(5));
+
+        List<?> search = region.getUpdatedChoicesPage("country=br", "SOUTH", 0, 10);
+        assertEquals(Arrays.asList("br-south"), search.get(0));
+        assertEquals(1, search.get(4));
+    }
+
+    @Test
+    public void testChoicesPageOfFailedScriptIsNotKept() {
+        final String script = "return [country + '-east', country + '-west']";
+        CascadeChoiceParameter region = new CascadeChoiceParameter("region", "description", "region-random-name",
+                new GroovyScript(new SecureGroovyScript(script, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_MULTI_SELECT, "country", false, 0);
+        region.setPageSize(1);
+
+        // the script is not approved yet, so it fails
+        List<?> failed = (List<?>) region.getUpdatedChoicesForUI("country=ar", null, 0);
+        assertEquals(0, failed.get(4));
+
+        ScriptApproval.get().preapprove(script, GroovyLanguage.get());
+        List<?> second = region.getUpdatedChoicesPage("country=ar", "", 1, 0);
+        assertEquals(Arrays.asList("ar-west"), second.get(0));
+        assertEquals(2, second.get(4));
+    }
+
+    @Test
+    public void testInitialValues() throws Exception {
+        CascadeChoiceParameter region = new CascadeChoiceParameter("region", "description", "region-random-name",
+                new GroovyScript(new SecureGroovyScript(COUNTRY_SCRIPT, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "country", false, 0);
+        CascadeChoiceParameter city = new CascadeChoiceParameter("city", "description", "city-random-name",
+                new GroovyScript(new SecureGroovyScript(CITY_SCRIPT, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "region", false, 0);
+        CascadeChoiceParameter secret = new CascadeChoiceParameter("secret", "description", "secret-random-name",
+                new GroovyScript(new SecureGroovyScript(CITY_SCRIPT, Boolean.FALSE, null), null),
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "password", false, 0);
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("country", "br"), city,
+                region, new PasswordParameterDefinition("password", "s3cr3t", "description"), secret,
+                new StringParameterDefinition("unreferenced", "value")));
+
+        Map<String, String> values = CascadeUpdate.computeInitialValues(city);
+        assertEquals("br", values.get("country"));
+        // the region is evaluated with the default country, and the city with the region selected by default
+        assertEquals("br-south", values.get("region"));
+        assertEquals("br-south-city", values.get("city"));
+        // sensitive values are not rendered in the page, nor the parameters referencing them
+        assertFalse(values.containsKey("password"));
+        assertFalse(values.containsKey("secret"));
+        // nor the parameters that no cascadable parameter references
+        assertFalse(values.containsKey("unreferenced"));
+
+        Map<Object, Object> referencedValues = CascadeUpdate.referencedValues(city, values);
+        assertEquals("region=br-south", AbstractCascadableParameter.encodeParameters(referencedValues));
+        assertNull(CascadeUpdate.referencedValues(secret, values));
+    }
+
+    @Test
+    public void testIndependentInitialValuesEvaluatedConcurrently() throws Exception {
+        List<ParameterDefinition> parameters = new ArrayList<>();
+        parameters.add(new StringParameterDefinition("country", "br"));
+        for (int i = 0; i < 2; i++) {
+            parameters.add(new CascadeChoiceParameter("param00" + i, "description", "random-name-" + i,
+                    new GroovyScript(new SecureGroovyScript(THREAD_NAME_SCRIPT, Boolean.FALSE, null), null),
+                    CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "country", false, 0));
+        }
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.addProperty(new ParametersDefinitionProperty(parameters));
+
+        Map<String, String> values = j.executeOnServer(
+                () -> CascadeUpdate.initialValues((AbstractCascadableParameter) parameters.get(1)));
+        for (int i = 0; i < 2; i++) {
+            String threadName = values.get("param00" + i);
+            assertTrue(threadName, threadName.startsWith("Active Choices script evaluation"));
+        }
+    }
+
 }
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link ChoiceEntry}.
+ */
+public class TestChoiceEntry {
+
+    @Test
+    public void testSuffixes() {
+        final Map<Object, Object> choices = new LinkedHashMap<>();
+        choices.put("A", "Description for A:selected:disabled");
+        choices.put("B:selected", "Description for B:disabled:selected");
+        choices.put("C", "Description for C");
+        choices.put("D", "Description for D:selected");
+        choices.put("E:disabled", "E:disabled");
+        final List<ChoiceEntry> entries = ChoiceEntry.of(choices);
+
+        assertEquals(5, entries.size());
+        assertEntry(entries.get(0), "A", "Description for A", true, true);
+        assertEntry(entries.get(1), "B", "Description for B", true, true);
+        assertEntry(entries.get(2), "C", "Description for C", false, false);
+        assertEntry(entries.get(3), "D", "Description for D", true, false);
+        assertEntry(entries.get(4), "E", "E", false, true);
+    }
+
+    @Test
+    public void testToUI() {
+        final Map<Object, Object> choices = new LinkedHashMap<>();
+        choices.put("A", "A");
+        choices.put("B", "B:selected");
+        choices.put("C", "C:disabled");
+        choices.put("D", "D:selected:disabled");
+        final List<Object> ui = ChoiceEntry.toUI(ChoiceEntry.of(choices));
+
+        assertEquals(Arrays.asList("A", "B", "C", "D"), ui.get(0));
+        assertEquals(Arrays.asList("A", "B", "C", "D"), ui.get(1));
+        assertEquals(Arrays.asList(0, ChoiceEntry.FLAG_SELECTED, ChoiceEntry.FLAG_DISABLED,
+                ChoiceEntry.FLAG_SELECTED | ChoiceEntry.FLAG_DISABLED), ui.get(2));
+
+        // the same choices have the same hash, whatever changes in them changes the hash
+        assertEquals(ui.get(3), ChoiceEntry.getHash(ChoiceEntry.toUI(ChoiceEntry.of(choices))));
+        choices.put("A", "A:selected");
+        assertNotEquals(ui.get(3), ChoiceEntry.getHash(ChoiceEntry.toUI(ChoiceEntry.of(choices))));
+        choices.remove("A");
+        assertNotEquals(ui.get(3), ChoiceEntry.getHash(ChoiceEntry.toUI(ChoiceEntry.of(choices))));
+    }
+
+    @Test
+    public void testValueForUI() {
+        final CascadeChoiceParameter param = new CascadeChoiceParameter("param", "description", "random-name",
+                null, CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "", false, 0);
+        final Map<Object, Object> choices = new LinkedHashMap<>();
+        choices.put("A", "A");
+        choices.put("B", "B");
+        assertEquals("A", param.getValueForUI(ChoiceEntry.toUI(ChoiceEntry.of(choices)), "B"));
+        choices.put("B", "B:selected");
+        assertEquals("B", param.getValueForUI(ChoiceEntry.toUI(ChoiceEntry.of(choices)), "A"));
+    }
+
+    @Test
+    public void testToJson() {
+        final Map<Object, Object> choices = new LinkedHashMap<>();
+        choices.put("a", "A:selected");
+        choices.put("b", "B \"quoted\":disabled");
+        assertEquals("[[\"A\",\"B \\\"quoted\\\"\"],[\"a\",\"b\"],[1,2]]",
+                ChoiceEntry.toJson(ChoiceEntry.of(choices)));
+    }
+
+    private static void assertEntry(ChoiceEntry entry, String value, String label, boolean selected,
+            boolean disabled) {
+        assertEquals(value, entry.getValue());
+        assertEquals(label, entry.getLabel());
+        assertEquals(selected, entry.isSelected());
+        assertEquals(disabled, entry.isDisabled());
+    }
+}
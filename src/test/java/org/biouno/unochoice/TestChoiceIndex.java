@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link ChoiceIndex}.
+ */
+public class TestChoiceIndex {
+
+    @Test
+    public void testPages() {
+        final ChoiceIndex index = index(25);
+
+        ChoiceIndex.Page page = index.page(null, 0, 10);
+        assertEquals(25, page.getTotal());
+        assertEquals(10, page.getNext());
+        // the selected choice of the last page is in the first page too
+        assertEquals(Arrays.asList("v0", "v1", "v2", "v3", "v4", "v5", "v6", "v7", "v8", "v9", "v24"),
+                values(page));
+
+        page = index.page("", 20, 10);
+        assertEquals(25, page.getNext());
+        assertEquals(Arrays.asList("v20", "v21", "v22", "v23", "v24"), values(page));
+
+        page = index.page(null, 30, 10);
+        assertEquals(25, page.getNext());
+        assertEquals(0, page.getEntries().size());
+    }
+
+    @Test
+    public void testSearch() {
+        final ChoiceIndex index = index(25);
+
+        ChoiceIndex.Page page = index.page("LABEL 2", 0, 3);
+        assertEquals(6, page.getTotal());
+        assertEquals(Arrays.asList("v2", "v20", "v21"), values(page));
+
+        // narrowed from the matches of the previous query
+        page = index.page("label 24", 0, 3);
+        assertEquals(1, page.getTotal());
+        assertEquals(Arrays.asList("v24"), values(page));
+
+        // special characters are not regular expressions
+        page = index.page("label .", 0, 3);
+        assertEquals(0, page.getTotal());
+    }
+
+    @Test
+    public void testToUI() {
+        final List<Object> ui = index(3).page(null, 0, 2).toUI();
+        assertEquals(6, ui.size());
+        assertEquals(Arrays.asList("Label 0", "Label 1", "Label 2"), ui.get(0));
+        assertEquals(Arrays.asList(0, 0, ChoiceEntry.FLAG_SELECTED), ui.get(2));
+        assertNull(ui.get(3));
+        assertEquals(3, ui.get(4));
+        assertEquals(2, ui.get(5));
+    }
+
+    private static ChoiceIndex index(int size) {
+        final Map<Object, Object> choices = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            choices.put("v" + i, "Label " + i + (i == size - 1 ? ":selected" : ""));
+        }
+        return new ChoiceIndex(ChoiceEntry.of(choices));
+    }
+
+    private static List<String> values(ChoiceIndex.Page page) {
+        final List<String> values = new ArrayList<>();
+        for (ChoiceEntry entry : page.getEntries()) {
+            values.add(entry.getValue());
+        }
+        return values;
+    }
+}
@@ -26,21 +26,47 @@ package org.biouno.unochoice;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.biouno.unochoice.model.GroovyScript;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
 import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
 import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
+import org.htmlunit.html.HtmlPage;
+import org.htmlunit.html.HtmlSelect;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParameterDefinition;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.User;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+
 public class TestChoiceParameter {
 
     private final String SCRIPT = "return ['a', 'b']";
     private final String FALLBACK_SCRIPT = "return ['EMPTY!']";
+    private final String NANO_TIME_SCRIPT = "return [System.nanoTime().toString()]";
+    private final String SLOW_SCRIPT = "Thread.sleep(10000); return ['slow']";
+    private final String THREAD_NAME_SCRIPT = "return [Thread.currentThread().getName()]";
+    private final String USER_SCRIPT = "def user = jenkins.model.Jenkins.getAuthentication2().getName(); "
+            + "return [(user): user]";
 
     @Rule
     public JenkinsRule j = new JenkinsRule();
@@ -49,6 +75,10 @@ public class TestChoiceParameter {
     public void setUp() throws Exception {
         ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
         ScriptApproval.get().preapprove(FALLBACK_SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(NANO_TIME_SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(SLOW_SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(THREAD_NAME_SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(USER_SCRIPT, GroovyLanguage.get());
     }
 
     @Test
@@ -82,4 +112,113 @@ public class TestChoiceParameter {
         assertFalse(param.getFilterable());
         assertEquals(Integer.valueOf(5), param.getFilterLength());
     }
+
+    @Test
+    public void testResultCache() {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(NANO_TIME_SCRIPT, Boolean.FALSE, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, Boolean.FALSE, null));
+        ChoiceParameter param = new ChoiceParameter("param000", "description", "some-random-name", script,
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+
+        // disabled by default
+        assertNull(param.getResultCacheTtl());
+        assertNotEquals(param.getChoices(), param.getChoices());
+
+        param.setResultCacheTtl(60);
+        assertEquals(param.getChoices(), param.getChoices());
+        assertEquals(1, param.getResultCacheHits());
+        assertEquals(1, param.getResultCacheMisses());
+
+        param.clearResultCache();
+        param.getChoices();
+        assertEquals(2, param.getResultCacheMisses());
+    }
+
+    @Test
+    public void testResultCachePerUser() {
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(USER_SCRIPT, Boolean.FALSE, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, Boolean.FALSE, null));
+        ChoiceParameter param = new ChoiceParameter("param000", "description", "some-random-name", script,
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+        param.setResultCacheTtl(60);
+
+        for (String user : Arrays.asList("alice", "bob", "alice")) {
+            try (ACLContext ignored = ACL.as2(User.getById(user, true).impersonate2())) {
+                final Map<Object, Object> choices = param.getChoices();
+                assertEquals(Collections.singletonMap(user, user), choices);
+                try {
+                    choices.clear();
+                    fail("Cached choices should not be changed by the callers");
+                } catch (UnsupportedOperationException e) {
+                    // expected
+                }
+            }
+        }
+        assertEquals(1, param.getResultCacheHits());
+        assertEquals(2, param.getResultCacheMisses());
+    }
+
+    @Test
+    public void testScriptTimeout() throws Exception {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(SLOW_SCRIPT, Boolean.FALSE, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, Boolean.FALSE, null));
+        ChoiceParameter param = new ChoiceParameter("param000", "description", "some-random-name", script,
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+        param.setScriptTimeout(1);
+
+        final long start = System.nanoTime();
+        assertEquals(Collections.singletonMap("EMPTY!", "EMPTY!"), j.executeOnServer(param::getChoices));
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+    }
+
+    @Test
+    public void testScriptRunsInCallingThreadOutsideRequests() throws Exception {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(THREAD_NAME_SCRIPT, Boolean.FALSE, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, Boolean.FALSE, null));
+        ChoiceParameter param = new ChoiceParameter("param000", "description", "some-random-name", script,
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+
+        final String threadName = Thread.currentThread().getName();
+        assertEquals(Collections.singletonMap(threadName, threadName), param.getChoices());
+        assertEquals(threadName, param.getDefaultParameterValue().getValue());
+    }
+
+    @Test
+    public void testChoicesEvaluatedConcurrentlyWhenRendered() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        List<ParameterDefinition> parameters = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            GroovyScript script = new GroovyScript(new SecureGroovyScript(THREAD_NAME_SCRIPT, Boolean.FALSE, null),
+                    new SecureGroovyScript(FALLBACK_SCRIPT, Boolean.FALSE, null));
+            parameters.add(new ChoiceParameter("param00" + i, "description", "random-name-" + i, script,
+                    CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1));
+        }
+        project.addProperty(new ParametersDefinitionProperty(parameters));
+        project.save();
+
+        HtmlPage page = j.createWebClient().goTo("job/" + project.getName() + "/build?delay=0sec");
+        for (int i = 0; i < 2; i++) {
+            HtmlSelect select = (HtmlSelect) page.getElementById("random-name-" + i).getElementsByTagName("select").get(0);
+            String threadName = select.getOptions().get(0).getText();
+            assertTrue(threadName, threadName.startsWith("Active Choices script evaluation"));
+        }
+    }
+
+    @Test
+    public void testFindPipelineProject() throws Exception {
+        GroovyScript script = new GroovyScript(new SecureGroovyScript(SCRIPT, Boolean.FALSE, null),
+                new SecureGroovyScript(FALLBACK_SCRIPT, Boolean.FALSE, null));
+        ChoiceParameter param = new ChoiceParameter("param000", "description", "uuid-pipeline", script,
+                CascadeChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+        WorkflowJob project = j.createProject(WorkflowJob.class, "pipeline");
+        project.addProperty(new ParametersDefinitionProperty(param));
+
+        assertEquals(project, param.findProject());
+        project.renameTo("renamed");
+        assertEquals(project, param.findProject());
+        project.delete();
+        assertNull(param.findProject());
+    }
+
 }
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class TestTypeaheadChoiceParameter {
+
+    private final String SCRIPT = "return (1..500).collect { prefix + '-' + it }"
+            + ".findAll { it.contains(typeaheadQuery) }.take(typeaheadLimit)";
+    private final String GREEDY_SCRIPT = "return (1..500).collect { 'item-' + it }";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Before
+    public void setUp() throws Exception {
+        ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+        ScriptApproval.get().preapprove(GREEDY_SCRIPT, GroovyLanguage.get());
+    }
+
+    @Test
+    public void testQueryAndLimit() {
+        TypeaheadChoiceParameter param = new TypeaheadChoiceParameter("param000", "description", "some-random-name",
+                new GroovyScript(new SecureGroovyScript(SCRIPT, Boolean.FALSE, null), null),
+                TypeaheadChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "prefix");
+
+        assertEquals(TypeaheadChoiceParameter.DEFAULT_RESULT_LIMIT, param.getResultLimit());
+        assertEquals(TypeaheadChoiceParameter.DEFAULT_MIN_QUERY_LENGTH, param.getMinQueryLength());
+        assertEquals(TypeaheadChoiceParameter.DEFAULT_DEBOUNCE, param.getDebounce());
+
+        // without a query, every choice matches, up to the limit
+        List<?> choices = (List<?>) param.getUpdatedChoicesForUI("prefix=item", null, 0);
+        assertEquals(100, ((List<?>) choices.get(0)).size());
+
+        choices = (List<?>) param.getTypeaheadChoicesForUI("prefix=item", "item-42", null, 0);
+        assertEquals(Arrays.asList("item-42", "item-420", "item-421", "item-422", "item-423", "item-424",
+                "item-425", "item-426", "item-427", "item-428", "item-429"), choices.get(0));
+
+        param.setResultLimit(3);
+        choices = (List<?>) param.getTypeaheadChoicesForUI("prefix=other", "-42", null, 0);
+        assertEquals(Arrays.asList("other-42", "other-420", "other-421"), choices.get(0));
+    }
+
+    @Test
+    public void testLimitIgnoredByScript() {
+        TypeaheadChoiceParameter param = new TypeaheadChoiceParameter("param000", "description", "some-random-name",
+                new GroovyScript(new SecureGroovyScript(GREEDY_SCRIPT, Boolean.FALSE, null), null),
+                TypeaheadChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, "");
+        param.setResultLimit(10);
+
+        List<?> choices = (List<?>) param.getTypeaheadChoicesForUI("", "anything", null, 0);
+        assertEquals(10, ((List<?>) choices.get(0)).size());
+    }
+
+}
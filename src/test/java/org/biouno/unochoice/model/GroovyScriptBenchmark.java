@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+
+/**
+ * Benchmarks for the evaluation of Groovy scripts, and for the sanitization of their results.
+ *
+ * @since 2.8.4
+ */
+@JmhBenchmark
+public class GroovyScriptBenchmark {
+
+    private static final String SCRIPT = "return [PARAM, 'b', 'c']";
+
+    @State(Scope.Benchmark)
+    public static class ScriptState extends JmhBenchmarkState {
+
+        GroovyScript script;
+        GroovyScript sandboxScript;
+        Map<String, String> parameters;
+
+        @Override
+        public void setup() throws Exception {
+            ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+            script = new GroovyScript(new SecureGroovyScript(SCRIPT, false, null), null);
+            sandboxScript = new GroovyScript(new SecureGroovyScript(SCRIPT, true, null), null);
+            parameters = Collections.singletonMap("PARAM", "a");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ResultState extends JmhBenchmarkState {
+
+        @Param({"100", "10000"})
+        public int size;
+
+        GroovyScript script;
+        Map<Object, Object> plainMap;
+        Map<Object, Object> htmlMap;
+
+        @Override
+        public void setup() throws Exception {
+            script = new GroovyScript(new SecureGroovyScript(SCRIPT, false, null), null);
+            plainMap = new LinkedHashMap<>(size);
+            htmlMap = new LinkedHashMap<>(size);
+            for (int i = 0; i < size; i++) {
+                plainMap.put("key" + i, "value " + i);
+                htmlMap.put("key" + i, "<b>value</b> <script>alert(" + i + ")</script>");
+            }
+        }
+    }
+
+    @Benchmark
+    public Object eval(ScriptState state) {
+        return state.script.eval(state.parameters);
+    }
+
+    @Benchmark
+    public Object evalSandbox(ScriptState state) {
+        return state.sandboxScript.eval(state.parameters);
+    }
+
+    @Benchmark
+    public Object sanitizePlainMap(ResultState state) {
+        return state.script.resolveTypeAndSanitize(state.plainMap);
+    }
+
+    @Benchmark
+    public Object sanitizeHtmlMap(ResultState state) {
+        return state.script.resolveTypeAndSanitize(state.htmlMap);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.biouno.unochoice.util.LazyValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.slaves.EnvironmentVariablesNodeProperty;
+
+/**
+ * Test the {@link ScriptVariables}.
+ */
+public class TestScriptVariables {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void testLazyValues() {
+        final AtomicInteger computed = new AtomicInteger();
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("a", "1");
+        parameters.put("lazy", new LazyValue(() -> "value-" + computed.incrementAndGet()));
+        parameters.put("missing", new LazyValue(() -> null));
+        final ScriptVariables variables = new ScriptVariables(parameters);
+
+        assertEquals("1", variables.get("a"));
+        assertEquals(0, computed.get());
+        assertEquals("value-1", variables.get("lazy"));
+        assertEquals("value-1", variables.get("lazy"));
+        assertEquals(1, computed.get());
+        assertFalse(variables.containsKey("missing"));
+        assertNull(variables.get("missing"));
+    }
+
+    @Test
+    public void testGlobalNodeProperties() {
+        j.jenkins.getGlobalNodeProperties().add(new EnvironmentVariablesNodeProperty(
+                new EnvironmentVariablesNodeProperty.Entry("NODE_TIME", "20:13:13"),
+                new EnvironmentVariablesNodeProperty.Entry("a", "global")));
+        final ScriptVariables variables = new ScriptVariables(Collections.singletonMap("a", "1"));
+
+        // parameters take precedence over global node properties
+        assertEquals("1", variables.get("a"));
+        assertTrue(variables.containsKey("NODE_TIME"));
+        assertEquals("20:13:13", variables.get("NODE_TIME"));
+        assertEquals(2, variables.size());
+    }
+
+    @Test
+    public void testMacros() {
+        final String plain = "no macro";
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("plain", plain);
+        parameters.put("macro", "path=$PATH");
+        final ScriptVariables variables = new ScriptVariables(parameters);
+
+        assertSame(plain, variables.get("plain"));
+        assertEquals("path=" + System.getenv("PATH"), variables.get("macro"));
+    }
+
+    @Test
+    public void testScriptWrites() {
+        final ScriptVariables variables = new ScriptVariables(Collections.singletonMap("a", "1"));
+        variables.put("b", "2");
+        variables.remove("a");
+
+        assertFalse(variables.containsKey("a"));
+        assertEquals("2", variables.get("b"));
+        assertEquals(Collections.singletonMap("b", "2"), new HashMap<>(variables));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.io.FileUtils;
+import org.biouno.unochoice.util.LazyValue;
+import org.jenkinsci.plugins.scriptler.ScriptlerHelper;
+import org.jenkinsci.plugins.scriptler.ScriptlerManagement;
+import org.jenkinsci.plugins.scriptler.builder.ScriptlerBuilder;
+import org.jenkinsci.plugins.scriptler.config.Parameter;
+import org.jenkinsci.plugins.scriptler.config.Script;
+import org.jenkinsci.plugins.scriptler.config.ScriptlerConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import hudson.model.FileParameterValue;
+
+/**
+ * Test the {@link ScriptlerScript}.
+ */
+public class TestScriptlerScript {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void testScriptIsReadAgainOnlyWhenChanged() throws Exception {
+        final ScriptlerHelper scriptlerHelper = new ScriptlerHelper(
+                j.getInstance().getExtensionList(ScriptlerManagement.class).get(0));
+        saveScript(scriptlerHelper, "return 'one'");
+        Script script = new Script("cached.groovy", "cached.groovy", "A comment.", false, Collections.emptyList(), false);
+        ScriptlerConfiguration.getConfiguration().addOrReplace(script);
+        ScriptlerScript scriptlerScript = new ScriptlerScript(
+                new ScriptlerBuilder("", script.getId(), false, new Parameter[0]), Boolean.TRUE);
+
+        final GroovyScript groovyScript = scriptlerScript.toGroovyScript();
+        assertEquals("one", scriptlerScript.eval());
+        assertSame(groovyScript, scriptlerScript.toGroovyScript());
+
+        // a different length, in case the modification time does not change
+        saveScript(scriptlerHelper, "return 'changed'");
+        assertNotSame(groovyScript, scriptlerScript.toGroovyScript());
+        assertEquals("changed", scriptlerScript.eval());
+    }
+
+    @Test
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testParameterReferencesValuesThatAreNotStrings() throws Exception {
+        final ScriptlerHelper scriptlerHelper = new ScriptlerHelper(
+                j.getInstance().getExtensionList(ScriptlerManagement.class).get(0));
+        saveScript(scriptlerHelper, "return limit + ':' + item");
+        Script script = new Script("cached.groovy", "cached.groovy", "A comment.", false, Collections.emptyList(), false);
+        ScriptlerConfiguration.getConfiguration().addOrReplace(script);
+        ScriptlerScript scriptlerScript = new ScriptlerScript(new ScriptlerBuilder("", script.getId(), false,
+                new Parameter[] { new Parameter("limit", "$typeaheadLimit"), new Parameter("item", "${lazy}") }),
+                Boolean.TRUE);
+
+        final Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("typeaheadLimit", 10);
+        parameters.put("lazy", new LazyValue(() -> "computed"));
+        assertEquals("10:computed", scriptlerScript.eval((Map) parameters));
+    }
+
+    private static void saveScript(ScriptlerHelper scriptlerHelper, String text) throws Exception {
+        final File scriptFile = Files.createTempFile("uno-choice", "cached").toFile();
+        FileUtils.writeStringToFile(scriptFile, text, StandardCharsets.UTF_8, false);
+        final FileItem fi = new FileParameterValue.FileItemImpl(scriptFile);
+        scriptlerHelper.saveScript(fi, true, "cached");
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link BoundedCache}.
+ */
+public class TestBoundedCache {
+
+    @Test
+    public void testHitsAndMisses() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        assertNull(cache.get("a"));
+        cache.put("a", "A");
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.get("a"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        BoundedCache<String, String> cache = new BoundedCache<>(2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        // touch a, so that b becomes the eldest entry
+        cache.get("a");
+        cache.put("c", "C");
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("C", cache.get("c"));
+    }
+
+    @Test
+    public void testExpiredEntries() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 1, TimeUnit.MILLISECONDS);
+        cache.put("a", "A");
+        Thread.sleep(5);
+        assertNull(cache.get("a"));
+        assertEquals("A", cache.getStale("a"));
+    }
+
+    @Test
+    public void testNullValuesAreNotCached() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("a", null);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.getStale("a"));
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.RejectedAccessException;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.scripts.ScriptApproval;
+import org.jenkinsci.plugins.scriptsecurity.scripts.UnapprovedUsageException;
+import org.jenkinsci.plugins.scriptsecurity.scripts.languages.GroovyLanguage;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import groovy.lang.Binding;
+
+/**
+ * Test the {@link CompiledScriptCache}.
+ */
+public class TestCompiledScriptCache {
+
+    private final static String SCRIPT = "return 'Hello ' + name";
+    private final static String UNAPPROVED_SCRIPT = "return 'not approved'";
+    private final static String SANDBOX_SCRIPT = "return System.getProperty('java.home')";
+    private final static String REJECTED_SCRIPT = "return new java.util.zip.CRC32().getValue()";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Before
+    public void setUp() {
+        ScriptApproval.get().preapprove(SCRIPT, GroovyLanguage.get());
+        CompiledScriptCache.clear();
+    }
+
+    @Test
+    public void testScriptCompiledOnce() throws Exception {
+        final SecureGroovyScript script = new SecureGroovyScript(SCRIPT, false, null).configuringWithNonKeyItem();
+        final ClassLoader cl = j.jenkins.getPluginManager().uberClassLoader;
+
+        final Binding first = new Binding();
+        first.setVariable("name", "Jenkins");
+        assertEquals("Hello Jenkins", CompiledScriptCache.evaluate(script, cl, first));
+
+        final Binding second = new Binding();
+        second.setVariable("name", "Groovy");
+        assertEquals("Hello Groovy", CompiledScriptCache.evaluate(script, cl, second));
+
+        assertEquals(1, CompiledScriptCache.size());
+    }
+
+    @Test
+    public void testApprovalCheckedOnEveryEvaluation() throws Exception {
+        final ClassLoader cl = j.jenkins.getPluginManager().uberClassLoader;
+        final SecureGroovyScript script = new SecureGroovyScript(UNAPPROVED_SCRIPT, false, null);
+        try {
+            CompiledScriptCache.evaluate(script, cl, new Binding());
+            fail("Script should not have been evaluated before being approved");
+        } catch (UnapprovedUsageException e) {
+            // expected
+        }
+        ScriptApproval.get().preapprove(UNAPPROVED_SCRIPT, GroovyLanguage.get());
+        assertEquals("not approved", CompiledScriptCache.evaluate(script, cl, new Binding()));
+
+        ScriptApproval.get().clearApprovedScripts();
+        try {
+            CompiledScriptCache.evaluate(script, cl, new Binding());
+            fail("Script should not have been evaluated after its approval was revoked");
+        } catch (UnapprovedUsageException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSandboxEnforcedForCompiledScripts() throws Exception {
+        final ClassLoader cl = j.jenkins.getPluginManager().uberClassLoader;
+        final SecureGroovyScript script = new SecureGroovyScript(SANDBOX_SCRIPT, true, null);
+        for (int i = 0; i < 2; i++) {
+            try {
+                CompiledScriptCache.evaluate(script, cl, new Binding());
+                fail("Sandbox should have rejected the script");
+            } catch (RejectedAccessException e) {
+                // expected
+            }
+        }
+        assertEquals(1, CompiledScriptCache.size());
+    }
+
+    @Test
+    public void testRejectedSignatureIsPendingApproval() throws Exception {
+        final ClassLoader cl = j.jenkins.getPluginManager().uberClassLoader;
+        final SecureGroovyScript script = new SecureGroovyScript(REJECTED_SCRIPT, true, null)
+                .configuringWithNonKeyItem();
+        try {
+            CompiledScriptCache.evaluate(script, cl, new Binding());
+            fail("Sandbox should have rejected the script");
+        } catch (RejectedAccessException e) {
+            // expected
+        }
+        boolean pending = false;
+        for (ScriptApproval.PendingSignature signature : ScriptApproval.get().getPendingSignatures()) {
+            pending |= "new java.util.zip.CRC32".equals(signature.signature);
+        }
+        assertTrue(pending);
+    }
+}
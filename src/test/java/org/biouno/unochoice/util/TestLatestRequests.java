@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link LatestRequests}.
+ */
+public class TestLatestRequests {
+
+    @Test
+    public void testNewerRequestCancelsTheScriptOfOlderRequest() throws Exception {
+        final LatestRequests latestRequests = new LatestRequests();
+        final SingleFlight<String> singleFlight = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Boolean> older = callers.submit(() -> {
+                try (LatestRequests.Request request = latestRequests.start("page/param", 1)) {
+                    try {
+                        singleFlight.call("key", () -> {
+                            started.countDown();
+                            try {
+                                Thread.sleep(10000);
+                            } catch (InterruptedException e) {
+                                interrupted.countDown();
+                            }
+                            return null;
+                        }, 10, TimeUnit.SECONDS);
+                        return false;
+                    } catch (CancellationException e) {
+                        // the thread of the request is not interrupted
+                        return request.isSuperseded() && !Thread.currentThread().isInterrupted();
+                    }
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            try (LatestRequests.Request newer = latestRequests.start("page/param", 2)) {
+                assertTrue(older.get(5, TimeUnit.SECONDS));
+                assertFalse(newer.isSuperseded());
+            }
+            // no other request waits for the script, so it is cancelled
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(0, latestRequests.size());
+        assertNull(LatestRequests.current());
+    }
+
+    @Test
+    public void testOlderRequestArrivingLateIsSuperseded() {
+        final LatestRequests latestRequests = new LatestRequests();
+        try (LatestRequests.Request newer = latestRequests.start("page/param", 2);
+             LatestRequests.Request older = latestRequests.start("page/param", 1);
+             LatestRequests.Request other = latestRequests.start("page/other", 1)) {
+            assertTrue(older.isSuperseded());
+            assertFalse(newer.isSuperseded());
+            assertFalse(other.isSuperseded());
+        }
+        assertEquals(0, latestRequests.size());
+        assertNull(LatestRequests.current());
+    }
+
+    @Test
+    public void testRequestsWithoutKeyAreNotTracked() {
+        final LatestRequests latestRequests = new LatestRequests();
+        try (LatestRequests.Request first = latestRequests.start(null, 2);
+             LatestRequests.Request second = latestRequests.start(null, 1)) {
+            assertFalse(first.isSuperseded());
+            assertFalse(second.isSuperseded());
+            assertEquals(0, latestRequests.size());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link LayeredMap}.
+ */
+public class TestLayeredMap {
+
+    @Test
+    public void testPrecedence() {
+        final Map<String, String> top = new LinkedHashMap<>();
+        top.put("a", "top");
+        top.put("b", null);
+        final Map<String, String> bottom = new LinkedHashMap<>();
+        bottom.put("a", "bottom");
+        bottom.put("b", "bottom");
+        bottom.put("c", "bottom");
+        final Map<String, String> map = new LayeredMap<>(top, bottom);
+
+        assertEquals("top", map.get("a"));
+        assertNull(map.get("b"));
+        assertTrue(map.containsKey("b"));
+        assertEquals("bottom", map.get("c"));
+        assertFalse(map.containsKey("d"));
+        assertEquals(3, map.size());
+        // same order as putAll of the bottom layer, then of the top layer
+        assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(map.keySet().toArray()));
+    }
+
+    @Test
+    public void testReadsThrough() {
+        final Map<String, String> top = new LinkedHashMap<>();
+        final Map<String, String> map = new LayeredMap<>(top, Collections.singletonMap("a", "bottom"));
+        assertEquals("bottom", map.get("a"));
+        top.put("a", "top");
+        assertEquals("top", map.get("a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        new LayeredMap<>(new LinkedHashMap<String, String>()).put("a", "b");
+    }
+}
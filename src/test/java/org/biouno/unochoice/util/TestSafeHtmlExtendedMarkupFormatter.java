@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link SafeHtmlExtendedMarkupFormatter}.
+ */
+public class TestSafeHtmlExtendedMarkupFormatter {
+
+    @Test
+    public void testIsPlainText() {
+        assertTrue(SafeHtmlExtendedMarkupFormatter.isPlainText(""));
+        assertTrue(SafeHtmlExtendedMarkupFormatter.isPlainText("release-1.2.3"));
+        assertTrue(SafeHtmlExtendedMarkupFormatter.isPlainText("a:selected"));
+        assertTrue(SafeHtmlExtendedMarkupFormatter.isPlainText("path/to/file_1 (copy)"));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("<b>a</b>"));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("a & b"));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("\"a\""));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("a=b"));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("{{a}}"));
+        assertFalse(SafeHtmlExtendedMarkupFormatter.isPlainText("café"));
+    }
+
+    @Test
+    public void testTranslate() throws IOException {
+        final SafeHtmlExtendedMarkupFormatter formatter = SafeHtmlExtendedMarkupFormatter.INSTANCE;
+        assertEquals("release-1.2.3", formatter.translate("release-1.2.3"));
+        assertEquals("<b>a</b>", formatter.translate("<b>a</b><script>alert(1)</script>"));
+        // the second time, the value is read from memory
+        assertEquals("<b>a</b>", formatter.translate("<b>a</b><script>alert(1)</script>"));
+        assertEquals("a &amp; b", formatter.translate("a & b"));
+        assertEquals("<input type=\"text\" />", formatter.translate("<input type=\"text\" />"));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link SingleFlight}.
+ */
+public class TestSingleFlight {
+
+    @Test
+    public void testConcurrentCallsAreCoalesced() throws Exception {
+        final SingleFlight<String> singleFlight = new SingleFlight<>();
+        final AtomicInteger evaluations = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService callers = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                results.add(callers.submit(() -> singleFlight.call("key", () -> {
+                    evaluations.incrementAndGet();
+                    release.await();
+                    return "result";
+                }, 10, TimeUnit.SECONDS)));
+            }
+            // wait for every caller to join the evaluation in flight
+            Thread.sleep(500);
+            release.countDown();
+            for (Future<Object> result : results) {
+                assertEquals("result", result.get());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, evaluations.get());
+        assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    public void testAbandonedEvaluationIsCancelled() throws Exception {
+        final SingleFlight<String> singleFlight = new SingleFlight<>();
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        try {
+            singleFlight.call("key", () -> {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            }, 100, TimeUnit.MILLISECONDS);
+            fail("Evaluation should have timed out");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals("new", singleFlight.call("key", () -> "new", 10, TimeUnit.SECONDS));
+    }
+}
@@ -27,16 +27,31 @@ package org.biouno.unochoice.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.biouno.unochoice.ChoiceParameter;
+import org.biouno.unochoice.model.GroovyScript;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SecureGroovyScript;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
-
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.User;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import hudson.slaves.EnvironmentVariablesNodeProperty;
+import jenkins.model.Jenkins;
 
 /**
  * Test the {@link Utils} utility class.
@@ -179,4 +194,62 @@ public class TestUtils {
         assertEquals("20:13:13", map.values().iterator().next());
     }
 
+    @Test
+    public void testGlobalNodePropertiesSnapshot() throws Exception {
+        j.jenkins.getGlobalNodeProperties().add(new EnvironmentVariablesNodeProperty(
+                new EnvironmentVariablesNodeProperty.Entry("time", "20:13:13")));
+        Map<String, Object> map = Utils.getGlobalNodeProperties();
+        assertSame(map, Utils.getGlobalNodeProperties());
+
+        // changing the properties without saving is not visible
+        j.jenkins.getGlobalNodeProperties().get(EnvironmentVariablesNodeProperty.class).getEnvVars().put("date", "2024-01-01");
+        assertSame(map, Utils.getGlobalNodeProperties());
+
+        j.jenkins.save();
+        map = Utils.getGlobalNodeProperties();
+        assertEquals("20:13:13", map.get("time"));
+        assertEquals("2024-01-01", map.get("date"));
+    }
+
+    @Test
+    public void testFindProjectByParameterUUID() throws Exception {
+        ChoiceParameter parameter = new ChoiceParameter("param", "description", "uuid-index-test",
+                new GroovyScript(new SecureGroovyScript("return []", true, null), null),
+                ChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1);
+        FreeStyleProject project = j.createFreeStyleProject("indexed");
+        // adding the property does not fire ItemListener#onUpdated, so the first lookup scans the projects
+        project.addProperty(new ParametersDefinitionProperty(parameter));
+        assertTrue(ParameterUUIDIndex.get("uuid-index-test").isEmpty());
+        assertEquals(project, Utils.findProjectByParameterUUID("uuid-index-test"));
+        assertEquals(Collections.singleton("indexed"), ParameterUUIDIndex.get("uuid-index-test"));
+
+        project.renameTo("renamed");
+        assertEquals(Collections.singleton("renamed"), ParameterUUIDIndex.get("uuid-index-test"));
+        assertEquals(project, Utils.findProjectByParameterUUID("uuid-index-test"));
+
+        project.delete();
+        assertTrue(ParameterUUIDIndex.get("uuid-index-test").isEmpty());
+        assertNull(Utils.findProjectByParameterUUID("uuid-index-test"));
+    }
+
+    @Test
+    public void testFindJobByParameterUUIDScansWhenIndexedJobIsNotReadable() throws Exception {
+        FreeStyleProject hidden = j.createFreeStyleProject("hidden");
+        FreeStyleProject visible = j.createFreeStyleProject("visible");
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.READ).everywhere().to("alice")
+                .grant(Item.READ).onItems(visible).to("alice"));
+        for (FreeStyleProject project : Arrays.asList(hidden, visible)) {
+            project.addProperty(new ParametersDefinitionProperty(new ChoiceParameter("param", "description",
+                    "uuid-unreadable-test", new GroovyScript(new SecureGroovyScript("return []", true, null), null),
+                    ChoiceParameter.PARAMETER_TYPE_SINGLE_SELECT, false, 1)));
+        }
+        // only the job alice cannot read is indexed
+        ParameterUUIDIndex.put("uuid-unreadable-test", "hidden");
+        try (ACLContext ignored = ACL.as(User.getById("alice", true))) {
+            assertEquals(visible, Utils.findJobByParameterUUID("uuid-unreadable-test"));
+        }
+    }
+
 }
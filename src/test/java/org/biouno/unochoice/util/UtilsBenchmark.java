@@ -0,0 +1,62 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014-2020 Ioannis Moutsatsos, Bruno P. Kinoshita
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.biouno.unochoice.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+
+/**
+ * Benchmarks for the handling of the {@code :selected} and {@code :disabled} suffixes.
+ *
+ * @since 2.8.4
+ */
+@JmhBenchmark
+public class UtilsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Values {
+        String plain = "some value";
+        String selected = "some value:selected";
+        String disabledSelected = "some value:disabled:selected";
+    }
+
+    @Benchmark
+    public String escapePlain(Values values) {
+        return Utils.escapeSelectedAndDisabled(values.plain);
+    }
+
+    @Benchmark
+    public String escapeSelected(Values values) {
+        return Utils.escapeSelectedAndDisabled(values.selected);
+    }
+
+    @Benchmark
+    public String escapeDisabledSelected(Values values) {
+        return Utils.escapeSelectedAndDisabled(values.disabledSelected);
+    }
+}
@@ -0,0 +1,53 @@
+import {beforeAll, describe, test} from '@jest/globals';
+import expect from "expect";
+import jQuery from "jquery";
+
+let UnoChoice;
+
+beforeAll(() => {
+    // UnoChoice.es6 expects the jQuery of Jenkins, and exports itself in the window
+    window.jQuery3 = jQuery;
+    window.jQuery = jQuery;
+    require('../../main/resources/org/biouno/unochoice/stapler/unochoice/UnoChoice.es6');
+    UnoChoice = window.UnoChoice;
+});
+
+describe('updateCascade', () => {
+    test('When the choices displayed change, the update cached for the same values is not used', async () => {
+        document.body.innerHTML = `
+            <select name="value" id="a"><option value="1">1</option><option value="2">2</option><option value="3">3</option></select>
+            <select name="value" id="b"></select>`;
+        let a = document.getElementById('a');
+        let b = document.getElementById('b');
+        let calls = 0;
+        // B has the same choices for A=1 and A=3, and is left out of the response when they are displayed already
+        let proxy = {
+            getCascadeUpdateForUI: (changedParameter, parameters, hashes, page, sequence, callback) => {
+                calls++;
+                let choice = parameters.split('__LESEP__').includes('A=2') ? 'even' : 'odd';
+                let data = {};
+                if (!hashes.split('__LESEP__').includes(`B=hash-${choice}`)) {
+                    data['B'] = [[choice], [choice], [1], `hash-${choice}`];
+                }
+                callback({responseObject: () => data});
+            }
+        };
+        let cascadeParameter = new UnoChoice.CascadeParameter('B', b, 'random_b', proxy);
+        new UnoChoice.ReferencedParameter('A', a, cascadeParameter);
+        UnoChoice.cascadeParameters.push(cascadeParameter);
+        let change = async (value) => {
+            a.value = value;
+            await cascadeParameter.updateCascade('A');
+            return b.value;
+        };
+
+        expect(await change('1')).toBe('odd');
+        expect(await change('3')).toBe('odd');
+        expect(await change('2')).toBe('even');
+        expect(await change('3')).toBe('odd');
+        expect(calls).toBe(4);
+        // the update for A=2 displaying the choices of A=3 was cached
+        expect(await change('2')).toBe('even');
+        expect(calls).toBe(4);
+    });
+});